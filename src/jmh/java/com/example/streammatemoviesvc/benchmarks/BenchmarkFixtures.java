@@ -0,0 +1,98 @@
+package com.example.streammatemoviesvc.benchmarks;
+
+import com.example.streammatemoviesvc.app.commonData.models.entities.Actor;
+import com.example.streammatemoviesvc.app.commonData.models.enums.ImageType;
+import com.example.streammatemoviesvc.app.feather.models.entities.Movie;
+import com.example.streammatemoviesvc.app.feather.models.entities.MovieImage;
+import com.example.streammatemoviesvc.app.feather.models.entities.MovieRatingBucket;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Данни за бенчмарките с размерите, които TMDB и базата реално връщат:
+ * 20 резултата на страница от search, десетки backdrops/posters, 21 актьора на филм.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    // Редове като тези от native заявките: [id, title, poster, release_date, ratings_count, ratings_sum, created_at]
+    static List<Object[]> catalogRows(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        Timestamp createdAt = Timestamp.from(Instant.parse("2025-01-01T00:00:00Z"));
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{UUID.randomUUID(), "Movie " + i, "/poster" + i + ".jpg", "2021-05-1" + (i % 10),
+                    (long) i, i * 7.5, createdAt});
+        }
+        return rows;
+    }
+
+    static String searchResponseJson(int results) {
+        StringBuilder json = new StringBuilder("{\"page\":1,\"results\":[");
+        for (int i = 0; i < results; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"adult\":false,\"backdrop_path\":\"/backdrop").append(i).append(".jpg\",")
+                    .append("\"genre_ids\":[28,12,878],\"id\":").append(500_000 + i).append(',')
+                    .append("\"original_language\":\"en\",\"original_title\":\"Movie ").append(i).append("\",")
+                    .append("\"overview\":\"").append("A long overview of the movie plot. ".repeat(8)).append("\",")
+                    .append("\"popularity\":").append(120.5 + i).append(',')
+                    .append("\"poster_path\":\"/poster").append(i).append(".jpg\",")
+                    .append("\"release_date\":\"2021-05-1").append(i % 10).append("\",")
+                    .append("\"title\":\"Movie ").append(i).append("\",\"video\":false,")
+                    .append("\"vote_average\":7.").append(i % 10).append(",\"vote_count\":").append(1000 + i).append('}');
+        }
+        return json.append("],\"total_pages\":12,\"total_results\":231}").toString();
+    }
+
+    static String imagesResponseJson(int backdrops, int posters) {
+        StringBuilder json = new StringBuilder("{\"id\":500000,\"backdrops\":[");
+        appendImages(json, "backdrop", backdrops);
+        json.append("],\"logos\":[");
+        appendImages(json, "logo", 10);
+        json.append("],\"posters\":[");
+        appendImages(json, "poster", posters);
+        return json.append("]}").toString();
+    }
+
+    private static void appendImages(StringBuilder json, String prefix, int count) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"aspect_ratio\":1.778,\"height\":1080,\"iso_639_1\":null,")
+                    .append("\"file_path\":\"/").append(prefix).append(i).append(".jpg\",")
+                    .append("\"vote_average\":5.3,\"vote_count\":4,\"width\":1920}");
+        }
+    }
+
+    // Филм с всичко, което /get-movie-details сериализира
+    static Movie fullyPopulatedMovie() {
+        Movie movie = new Movie().setId(UUID.randomUUID()).setTmdbId(500_000L)
+                .setVideoURL("https://vidsrc.net/embed/movie/500000").setRatingsCount(42).setRatingsSum(315.0);
+        movie.setTitle("Benchmark Movie").setPosterImgURL("/poster.jpg").setSpecialText("Tagline")
+                .setSearchTag("benchmark").setGenres("Action,Adventure,Science Fiction,")
+                .setDescription("A long overview of the movie plot. ".repeat(8)).setReleaseDate("2021-05-10")
+                .setTmdbRating("7.4").setBackgroundImg_URL("/backdrop.jpg").setCreatedAt(Instant.now());
+
+        for (int i = 0; i < 21; i++) {
+            movie.getCastList().add(new Actor().setId(UUID.randomUUID()).setTmdbId(1000L + i)
+                    .setNameInRealLife("Actor " + i).setImageURL("/actor" + i + ".jpg")
+                    .setBiography("Biography of the actor. ".repeat(20)).setBirthday("1980-01-01")
+                    .setPlaceOfBirth("Sofia, Bulgaria").setKnownFor("Acting").setGender("2").setPopularity("12.5")
+                    .setImdbId("nm00000" + i).setInstagramUsername("actor" + i));
+        }
+
+        List<MovieImage> images = new ArrayList<>();
+        for (int i = 0; i < 29; i++) images.add(new MovieImage().setImageType(ImageType.BACKDROP).setImageURL("/backdrop" + i + ".jpg"));
+        for (int i = 0; i < 8; i++) images.add(new MovieImage().setImageType(ImageType.POSTER).setImageURL("/poster" + i + ".jpg"));
+        movie.addAllImages(images);
+
+        for (int bucket = 1; bucket <= 10; bucket++) {
+            movie.getRatingHistogram().add(new MovieRatingBucket().setBucket(bucket).setVotes(bucket * 3L).setMovie(movie));
+        }
+        return movie;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.streammatemoviesvc.benchmarks;
+
+import com.example.streammatemoviesvc.app.feather.models.dtos.CinemaRecordResponse;
+import com.example.streammatemoviesvc.app.feather.services.MovieService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Object[] → CinemaRecordResponse, както в getEveryThirtyMovies (30 реда) и getNextTwentyMoviesByGenre (20 реда).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CatalogMappingBenchmark {
+
+    private List<Object[]> thirtyRows;
+    private List<Object[]> twentyRows;
+
+    @Setup
+    public void setUp() {
+        this.thirtyRows = BenchmarkFixtures.catalogRows(30);
+        this.twentyRows = BenchmarkFixtures.catalogRows(20);
+    }
+
+    @Benchmark
+    public List<CinemaRecordResponse> everyThirtyMovies() {
+        return this.thirtyRows.stream().map(MovieService::toCinemaRecordResponse).toList();
+    }
+
+    @Benchmark
+    public List<CinemaRecordResponse> nextTwentyMoviesByGenre() {
+        return this.twentyRows.stream().map(MovieService::toCinemaRecordResponse).toList();
+    }
+}
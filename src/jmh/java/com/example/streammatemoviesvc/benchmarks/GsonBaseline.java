@@ -0,0 +1,40 @@
+package com.example.streammatemoviesvc.benchmarks;
+
+import com.example.streammatemoviesvc.app.commonData.models.enums.ImageType;
+import com.example.streammatemoviesvc.app.feather.models.entities.MovieImage;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Старото Gson парсване (getJsonValue и extractDetailsImages) – само като базова линия за TmdbParsingBenchmark.
+ */
+final class GsonBaseline {
+
+    private GsonBaseline() {
+    }
+
+    static String getJsonValue(JsonObject jsonObj, String key) {
+        return (jsonObj != null && jsonObj.has(key) && !jsonObj.get(key).isJsonNull())
+                ? jsonObj.get(key).getAsString()
+                : "";
+    }
+
+    static List<MovieImage> extractDetailsImages(JsonArray imagesJsonAr, ImageType imageType, int limit) {
+        List<MovieImage> images = new ArrayList<>();
+        if (imagesJsonAr == null || imageType == null) return images;
+
+        int count = 0;
+        for (JsonElement jsonElement : imagesJsonAr) {
+            images.add(new MovieImage().setImageType(imageType)
+                    .setImageURL(jsonElement.getAsJsonObject().get("file_path").getAsString()));
+
+            if (count++ == limit) break;
+        }
+
+        return images;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.streammatemoviesvc.benchmarks;
+
+import com.example.streammatemoviesvc.app.configs.BeanConfig;
+import com.example.streammatemoviesvc.app.feather.models.entities.Movie;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализацията на /get-movie-details: филм с 21 актьора, 37 снимки и хистограма на оценките.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MovieSerializationBenchmark {
+
+    private final ObjectMapper objectMapper = new BeanConfig().objectMapper();
+    private Movie movie;
+
+    @Setup
+    public void setUp() {
+        this.movie = BenchmarkFixtures.fullyPopulatedMovie();
+    }
+
+    @Benchmark
+    public byte[] fullyPopulatedMovie() throws JsonProcessingException {
+        return this.objectMapper.writeValueAsBytes(this.movie);
+    }
+}
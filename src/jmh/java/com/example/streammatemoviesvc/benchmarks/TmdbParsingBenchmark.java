@@ -0,0 +1,87 @@
+package com.example.streammatemoviesvc.benchmarks;
+
+import com.example.streammatemoviesvc.app.commonData.models.enums.ImageType;
+import com.example.streammatemoviesvc.app.commonData.models.tmdb.TmdbSearchResponse;
+import com.example.streammatemoviesvc.app.configs.BeanConfig;
+import com.example.streammatemoviesvc.app.feather.models.entities.MovieImage;
+import com.example.streammatemoviesvc.app.feather.services.MovieService;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Парсване на TMDB отговорите: старият Gson tree (GsonBaseline)
+ * срещу Jackson (typed records и streaming readDetailsImages), които ползва TmdbClient.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TmdbParsingBenchmark {
+
+    private static final String[] RESULT_FIELDS =
+            {"id", "title", "overview", "release_date", "backdrop_path", "poster_path", "vote_average"};
+
+    private final ObjectMapper objectMapper = new BeanConfig().objectMapper();
+
+    private String searchJson;
+    private byte[] searchBytes;
+    private String imagesJson;
+    private byte[] imagesBytes;
+    private JsonObject parsedResult;
+
+    @Setup
+    public void setUp() {
+        this.searchJson = BenchmarkFixtures.searchResponseJson(20);
+        this.searchBytes = this.searchJson.getBytes(StandardCharsets.UTF_8);
+        this.imagesJson = BenchmarkFixtures.imagesResponseJson(60, 30);
+        this.imagesBytes = this.imagesJson.getBytes(StandardCharsets.UTF_8);
+        this.parsedResult = com.google.gson.JsonParser.parseString(this.searchJson)
+                .getAsJsonObject().getAsJsonArray("results").get(0).getAsJsonObject();
+    }
+
+    @Benchmark
+    public void getJsonValue(Blackhole blackhole) {
+        for (String field : RESULT_FIELDS) {
+            blackhole.consume(GsonBaseline.getJsonValue(this.parsedResult, field));
+        }
+    }
+
+    @Benchmark
+    public void searchResponseGsonTree(Blackhole blackhole) {
+        JsonObject response = com.google.gson.JsonParser.parseString(this.searchJson).getAsJsonObject();
+        for (JsonElement result : response.getAsJsonArray("results")) {
+            for (String field : RESULT_FIELDS) {
+                blackhole.consume(GsonBaseline.getJsonValue(result.getAsJsonObject(), field));
+            }
+        }
+    }
+
+    @Benchmark
+    public TmdbSearchResponse searchResponseJackson() throws IOException {
+        return this.objectMapper.readValue(this.searchBytes, TmdbSearchResponse.class);
+    }
+
+    @Benchmark
+    public void imagesGsonTree(Blackhole blackhole) {
+        JsonObject response = com.google.gson.JsonParser.parseString(this.imagesJson).getAsJsonObject();
+        blackhole.consume(GsonBaseline.extractDetailsImages(
+                response.getAsJsonArray("backdrops"), ImageType.BACKDROP, 29));
+        blackhole.consume(GsonBaseline.extractDetailsImages(
+                response.getAsJsonArray("posters"), ImageType.POSTER, 8));
+    }
+
+    @Benchmark
+    public List<MovieImage> imagesJacksonStreaming() throws IOException {
+        try (JsonParser parser = this.objectMapper.getFactory().createParser(this.imagesBytes)) {
+            return MovieService.readDetailsImages(parser, 29, 8);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.streammatemoviesvc.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Латентностите и броя DB заявки за една фаза (endpoint + паралелност) на load теста.
+ */
+public class PhaseResult {
+
+    private final String name;
+    private final int concurrency;
+    private final List<Long> latenciesNanos = Collections.synchronizedList(new ArrayList<>());
+    private long errors;
+    private long wallNanos;
+    private long dbQueries;
+
+    public PhaseResult(String name, int concurrency) {
+        this.name = name;
+        this.concurrency = concurrency;
+    }
+
+    public void record(long nanos, boolean success) {
+        this.latenciesNanos.add(nanos);
+        if (!success) {
+            synchronized (this) {
+                this.errors++;
+            }
+        }
+    }
+
+    public void finish(long wallNanos, long dbQueries) {
+        this.wallNanos = wallNanos;
+        this.dbQueries = dbQueries;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public synchronized long getErrors() {
+        return this.errors;
+    }
+
+    public int getRequests() {
+        return this.latenciesNanos.size();
+    }
+
+    public double percentileMillis(double percentile) {
+        List<Long> sorted;
+        synchronized (this.latenciesNanos) {
+            sorted = new ArrayList<>(this.latenciesNanos);
+        }
+        if (sorted.isEmpty()) return 0;
+
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index)) / 1_000_000.0;
+    }
+
+    public double requestsPerSecond() {
+        return this.wallNanos == 0 ? 0 : getRequests() / (this.wallNanos / 1_000_000_000.0);
+    }
+
+    public double dbQueriesPerRequest() {
+        return getRequests() == 0 ? 0 : (double) this.dbQueries / getRequests();
+    }
+
+    public Map<String, Object> toReport() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("phase", this.name);
+        report.put("concurrency", this.concurrency);
+        report.put("requests", getRequests());
+        report.put("errors", getErrors());
+        report.put("p50Ms", percentileMillis(50));
+        report.put("p99Ms", percentileMillis(99));
+        report.put("requestsPerSecond", requestsPerSecond());
+        report.put("dbQueriesPerRequest", dbQueriesPerRequest());
+        return report;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%-28s c=%-3d n=%-6d err=%-4d p50=%8.2fms p99=%8.2fms %9.1f req/s %6.2f queries/req",
+                this.name, this.concurrency, getRequests(), getErrors(), percentileMillis(50), percentileMillis(99),
+                requestsPerSecond(), dbQueriesPerRequest());
+    }
+}
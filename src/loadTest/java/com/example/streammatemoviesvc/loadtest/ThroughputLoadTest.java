@@ -0,0 +1,291 @@
+package com.example.streammatemoviesvc.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * End-to-end throughput: приложението върви срещу истинска PostgreSQL и TmdbStubServer, а тестът
+ * натоварва /search-movies, /get-movie-details, /get-next-thirty-movies и коментарите при няколко нива на паралелност.
+ * Отчита p50/p99, записани филми в секунда (за всяко ниво, с нови термини) и DB заявки на HTTP заявка (от Hibernate statistics).
+ * <p>
+ * Настройки (system properties, от Gradle: -Ploadtest.concurrency=1,8,32):
+ * loadtest.concurrency, loadtest.requests-per-phase, loadtest.search-terms,
+ * loadtest.tmdb.latency-ms, loadtest.tmdb.throttle-ratio, loadtest.db.url/username/password.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ThroughputLoadTest {
+
+    private static final List<Integer> CONCURRENCY_LEVELS = Arrays.stream(
+            System.getProperty("loadtest.concurrency", "1,8,32").split(","))
+            .map(String::trim).map(Integer::parseInt).toList();
+    private static final int REQUESTS_PER_PHASE = Integer.getInteger("loadtest.requests-per-phase", 500);
+    private static final int SEARCH_TERMS = Integer.getInteger("loadtest.search-terms", 20);
+    private static final Duration INGESTION_TIMEOUT = Duration.ofMinutes(10);
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final TmdbStubServer TMDB_STUB;
+    private static final PostgreSQLContainer<?> POSTGRES;
+
+    static {
+        try {
+            TMDB_STUB = new TmdbStubServer(
+                    Duration.ofMillis(Long.getLong("loadtest.tmdb.latency-ms", 50)),
+                    Double.parseDouble(System.getProperty("loadtest.tmdb.throttle-ratio", "0.02")));
+        } catch (IOException exception) {
+            throw new RuntimeException("Cannot start the TMDB stub!", exception);
+        }
+
+        // Без подадена локална база вдигаме PostgreSQL в контейнер
+        if (System.getProperty("loadtest.db.url") == null) {
+            POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+            POSTGRES.start();
+        } else {
+            POSTGRES = null;
+        }
+    }
+
+    private final HttpClient httpClient = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<PhaseResult> results = new ArrayList<>();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        if (POSTGRES != null) {
+            registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+            registry.add("spring.datasource.username", POSTGRES::getUsername);
+            registry.add("spring.datasource.password", POSTGRES::getPassword);
+        } else {
+            registry.add("spring.datasource.url", () -> System.getProperty("loadtest.db.url"));
+            registry.add("spring.datasource.username", () -> System.getProperty("loadtest.db.username", "postgres"));
+            registry.add("spring.datasource.password", () -> System.getProperty("loadtest.db.password", ""));
+        }
+
+        registry.add("tmdb.base-url", TMDB_STUB::getBaseUrl);
+        // Всяка TMDB заявка трябва да стигне до stub-а, иначе мерим дисковия кеш
+        registry.add("tmdb.cache.enabled", () -> "false");
+        registry.add("ingestion.jobs.queue-capacity", () -> Math.max(100, SEARCH_TERMS));
+        registry.add("prefill.run-on-startup", () -> "false");
+
+        registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("logging.level.org.hibernate.SQL", () -> "WARN");
+        registry.add("logging.level.org.hibernate.type.descriptor", () -> "WARN");
+    }
+
+    @AfterAll
+    static void stopInfrastructure() {
+        TMDB_STUB.close();
+        if (POSTGRES != null) POSTGRES.stop();
+    }
+
+    @Test
+    void ingestionAndReadThroughput() throws Exception {
+        // Всяко ниво търси собствени термини, иначе след първото всички филми вече са записани и се мерят само пропуски
+        Map<Integer, Double> moviesPerSecond = new LinkedHashMap<>();
+        for (int concurrency : CONCURRENCY_LEVELS) {
+            moviesPerSecond.put(concurrency, runIngestion(concurrency));
+        }
+
+        List<String> movieIds = new ArrayList<>();
+        for (JsonNode movie : getJson("/get-next-thirty-movies?page=0&size=" + MAX_PAGE_SIZE)) {
+            movieIds.add(movie.get("id").asText());
+        }
+        assertFalse(movieIds.isEmpty(), "Ingestion did not save any movies");
+
+        int catalogPages = Math.max(1, movieIds.size() / 30);
+        for (int concurrency : CONCURRENCY_LEVELS) {
+            runPhase("get-next-thirty-movies", concurrency,
+                    () -> get("/get-next-thirty-movies?size=30&page=" + ThreadLocalRandom.current().nextInt(catalogPages)));
+            runPhase("get-movie-details", concurrency,
+                    () -> get("/get-movie-details?id=" + randomOf(movieIds)));
+            runPhase("post-movie-comment", concurrency,
+                    () -> postComment(randomOf(movieIds)));
+            runPhase("get-movie-comments-by-cursor", concurrency,
+                    () -> get("/get-next-movie-comments-by-cursor?size=10&currentCinemaRecordId=" + randomOf(movieIds)));
+        }
+
+        report(moviesPerSecond);
+        for (PhaseResult result : this.results) {
+            assertEquals(0, result.getErrors(), result.getName() + " returned errors");
+        }
+    }
+
+    // Пуска SEARCH_TERMS търсения наведнъж и чака всички задачи; връща записаните филми в секунда
+    private double runIngestion(int concurrency) throws Exception {
+        PhaseResult submitPhase = new PhaseResult("search-movies (submit)", concurrency);
+        Statistics statistics = statistics();
+        long queriesBefore = statistics.getPrepareStatementCount();
+        long tmdbRequestsBefore = TMDB_STUB.getRequests();
+        long tmdbThrottledBefore = TMDB_STUB.getThrottled();
+        long start = System.nanoTime();
+
+        List<String> jobIds = Collections.synchronizedList(new ArrayList<>());
+        try (ExecutorService clients = Executors.newFixedThreadPool(concurrency)) {
+            for (int i = 0; i < SEARCH_TERMS; i++) {
+                String term = "load test c" + concurrency + " term " + i;
+                clients.submit(() -> {
+                    long requestStart = System.nanoTime();
+                    HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/search-movies"))
+                            .POST(HttpRequest.BodyPublishers.ofString(term)).build());
+                    submitPhase.record(System.nanoTime() - requestStart, response.statusCode() == 202);
+                    if (response.statusCode() == 202) jobIds.add(this.objectMapper.readTree(response.body()).get("id").asText());
+                    return null;
+                });
+            }
+        }
+
+        long savedMovies = 0;
+        Instant deadline = Instant.now().plus(INGESTION_TIMEOUT);
+        for (String jobId : jobIds) {
+            JsonNode job = getJson("/get-ingestion-job-status?jobId=" + jobId);
+            while (!isFinished(job) && Instant.now().isBefore(deadline)) {
+                TimeUnit.MILLISECONDS.sleep(200);
+                job = getJson("/get-ingestion-job-status?jobId=" + jobId);
+            }
+            savedMovies += job.get("savedMovies").asLong();
+        }
+
+        long wallNanos = System.nanoTime() - start;
+        submitPhase.finish(wallNanos, statistics.getPrepareStatementCount() - queriesBefore);
+        this.results.add(submitPhase);
+
+        double moviesPerSecond = savedMovies / (wallNanos / 1_000_000_000.0);
+        System.out.printf(Locale.ROOT, "Ingestion c=%d: %d terms, %d movies saved in %.1fs (%.2f movies/s, %.1f queries/movie), " +
+                        "TMDB stub served %d requests (%d throttled)%n",
+                concurrency, SEARCH_TERMS, savedMovies, wallNanos / 1_000_000_000.0, moviesPerSecond,
+                savedMovies == 0 ? 0 : (double) (statistics.getPrepareStatementCount() - queriesBefore) / savedMovies,
+                TMDB_STUB.getRequests() - tmdbRequestsBefore, TMDB_STUB.getThrottled() - tmdbThrottledBefore);
+        return moviesPerSecond;
+    }
+
+    private void runPhase(String name, int concurrency, Supplier<HttpResponse<String>> request) {
+        PhaseResult phase = new PhaseResult(name, concurrency);
+        Statistics statistics = statistics();
+        long queriesBefore = statistics.getPrepareStatementCount();
+        long start = System.nanoTime();
+
+        try (ExecutorService clients = Executors.newFixedThreadPool(concurrency)) {
+            for (int i = 0; i < REQUESTS_PER_PHASE; i++) {
+                clients.submit(() -> {
+                    long requestStart = System.nanoTime();
+                    boolean success;
+                    try {
+                        success = request.get().statusCode() < 400;
+                    } catch (RuntimeException exception) {
+                        success = false;
+                    }
+                    phase.record(System.nanoTime() - requestStart, success);
+                });
+            }
+        }
+
+        phase.finish(System.nanoTime() - start, statistics.getPrepareStatementCount() - queriesBefore);
+        this.results.add(phase);
+    }
+
+    private HttpResponse<String> postComment(String movieId) {
+        String form = "authorUsername=load&authorFullName=" + encode("Load Test") + "&authorImgURL=" + encode("/author.jpg")
+                + "&commentText=" + encode("Load test comment") + "&rating=" + ThreadLocalRandom.current().nextInt(1, 11)
+                + "&createdAt=" + encode(Instant.now().toString()) + "&authorId=" + UUID.randomUUID() + "&movieId=" + movieId;
+
+        return send(HttpRequest.newBuilder(uri("/post-movie-comment?" + form))
+                .POST(HttpRequest.BodyPublishers.noBody()).build());
+    }
+
+    private void report(Map<Integer, Double> moviesPerSecond) throws IOException {
+        System.out.println("---- Load test results ----");
+        this.results.forEach(System.out::println);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("moviesIngestedPerSecond", moviesPerSecond);
+        report.put("tmdbRequests", TMDB_STUB.getRequests());
+        report.put("tmdbThrottled", TMDB_STUB.getThrottled());
+        report.put("phases", this.results.stream().map(PhaseResult::toReport).toList());
+
+        String reportPath = System.getProperty("loadtest.report");
+        if (reportPath != null) {
+            Path path = Path.of(reportPath);
+            Files.createDirectories(path.getParent());
+            this.objectMapper.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), report);
+            System.out.println("Report written to " + path);
+        }
+    }
+
+    private Statistics statistics() {
+        return this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private static boolean isFinished(JsonNode job) {
+        String status = job.get("status").asText();
+        return status.equals("COMPLETED") || status.equals("FAILED");
+    }
+
+    private JsonNode getJson(String path) throws IOException {
+        return this.objectMapper.readTree(get(path).body());
+    }
+
+    private HttpResponse<String> get(String path) {
+        return send(HttpRequest.newBuilder(uri(path)).GET().build());
+    }
+
+    private HttpResponse<String> send(HttpRequest request) {
+        try {
+            return this.httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException exception) {
+            throw new RuntimeException("Request to " + request.uri() + " failed!", exception);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted!", exception);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + this.port + path);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String randomOf(List<String> values) {
+        return values.get(ThreadLocalRandom.current().nextInt(values.size()));
+    }
+}
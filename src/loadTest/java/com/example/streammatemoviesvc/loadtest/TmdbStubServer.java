@@ -0,0 +1,190 @@
+package com.example.streammatemoviesvc.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Локален TMDB в същия процес. Отговаря със записаните отговори от resources/tmdb,
+ * като сменя id-тата, така че всеки термин дава нови филми, а половината cast се споделя между филмите.
+ * Закъснението и делът на 429 отговорите се настройват, за да се види поведението на TmdbRequestGovernor.
+ */
+public class TmdbStubServer implements AutoCloseable {
+
+    private static final Pattern MOVIE_PATH = Pattern.compile("^/3/movie/(\\d+)(/credits|/images)?$");
+    private static final Pattern PERSON_PATH = Pattern.compile("^/3/person/(\\d+)$");
+    private static final int SHARED_CAST_SIZE = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final Duration latency;
+    private final double throttleRatio;
+
+    private final JsonNode search = fixture("search.json");
+    private final JsonNode credits = fixture("credits.json");
+    private final byte[] images = bytes(fixture("images.json"));
+    private final byte[] details = bytes(fixture("details.json"));
+    private final JsonNode person = fixture("person.json");
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    public TmdbStubServer(Duration latency, double throttleRatio) throws IOException {
+        this.latency = latency;
+        this.throttleRatio = throttleRatio;
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/3/", this::handle);
+        this.server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    public long getThrottled() {
+        return this.throttled.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            this.requests.incrementAndGet();
+            sleep(this.latency);
+
+            if (this.throttleRatio > 0 && ThreadLocalRandom.current().nextDouble() < this.throttleRatio) {
+                this.throttled.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                exchange.sendResponseHeaders(429, -1);
+                return;
+            }
+
+            byte[] body = route(exchange.getRequestURI().getPath(), exchange.getRequestURI().getRawQuery());
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        }
+    }
+
+    private byte[] route(String path, String rawQuery) {
+        if (path.equals("/3/search/movie")) return searchPage(queryParam(rawQuery, "query"));
+
+        Matcher movieMatcher = MOVIE_PATH.matcher(path);
+        if (movieMatcher.matches()) {
+            long movieId = Long.parseLong(movieMatcher.group(1));
+            String suffix = movieMatcher.group(2);
+            if (suffix == null) return this.details;
+            if (suffix.equals("/images")) return this.images;
+            return castFor(movieId);
+        }
+
+        Matcher personMatcher = PERSON_PATH.matcher(path);
+        if (personMatcher.matches()) return personFor(Long.parseLong(personMatcher.group(1)));
+
+        // popular, top_rated, discover – същата страница като търсенето
+        if (path.startsWith("/3/movie/") || path.startsWith("/3/discover/")) return searchPage(path + "?" + rawQuery);
+        return null;
+    }
+
+    // Всеки термин получава собствен диапазон от id-та, така че различните термини записват различни филми
+    private byte[] searchPage(String term) {
+        ObjectNode page = this.search.deepCopy();
+        long baseId = 1_000_000L + Math.floorMod(term.hashCode(), 100_000) * 100L;
+
+        int index = 0;
+        for (JsonNode result : (ArrayNode) page.get("results")) {
+            ((ObjectNode) result).put("id", baseId + index)
+                    .put("title", result.get("title").asText() + " (" + term + ")");
+            index++;
+        }
+        return bytes(page);
+    }
+
+    // Първите SHARED_CAST_SIZE актьора се повтарят във всички филми, останалите са нови за всеки филм
+    private byte[] castFor(long movieId) {
+        ObjectNode movieCredits = this.credits.deepCopy();
+        movieCredits.put("id", movieId);
+
+        int index = 0;
+        for (JsonNode castMember : (ArrayNode) movieCredits.get("cast")) {
+            if (index >= SHARED_CAST_SIZE) ((ObjectNode) castMember).put("id", movieId * 100 + index);
+            index++;
+        }
+        return bytes(movieCredits);
+    }
+
+    private byte[] personFor(long personId) {
+        ObjectNode moviePerson = this.person.deepCopy();
+        moviePerson.put("id", personId).put("name", "Performer " + personId);
+        return bytes(moviePerson);
+    }
+
+    private static String queryParam(String rawQuery, String name) {
+        if (rawQuery == null) return "";
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0 && pair.substring(0, separator).equals(name)) {
+                return URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return "";
+    }
+
+    private JsonNode fixture(String name) {
+        try (InputStream input = TmdbStubServer.class.getResourceAsStream("/tmdb/" + name)) {
+            if (input == null) throw new RuntimeException("Missing TMDB fixture " + name + "!");
+            return this.objectMapper.readTree(input);
+        } catch (IOException exception) {
+            throw new RuntimeException("Cannot read TMDB fixture " + name + "!", exception);
+        }
+    }
+
+    private byte[] bytes(JsonNode node) {
+        try {
+            return this.objectMapper.writeValueAsBytes(node);
+        } catch (IOException exception) {
+            throw new RuntimeException("Cannot serialize TMDB stub response!", exception);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) return;
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+    }
+}
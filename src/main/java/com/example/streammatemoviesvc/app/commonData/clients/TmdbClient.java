@@ -0,0 +1,168 @@
+package com.example.streammatemoviesvc.app.commonData.clients;
+
+import com.example.streammatemoviesvc.app.commonData.services.IngestionMetrics;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+/**
+ * Единствената входна точка към TMDB. Всички заявки минават през локалния кеш
+ * и през {@link TmdbRequestGovernor}, който ограничава скоростта и повтаря при 429/5xx.
+ * Отговорите се декодират от потока с Jackson, без да се четат в String.
+ */
+@Slf4j
+@Component
+public class TmdbClient {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final HttpClient httpClient;
+    private final TmdbResponseCache responseCache;
+    private final TmdbRequestGovernor requestGovernor;
+    private final ObjectMapper objectMapper;
+    private final IngestionMetrics ingestionMetrics;
+
+    /**
+     * Чете отговора директно от потока – за случаите, в които не ни трябва целият документ.
+     */
+    @FunctionalInterface
+    public interface ResponseReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
+
+    @Autowired
+    public TmdbClient(HttpClient httpClient,
+                      TmdbResponseCache responseCache,
+                      TmdbRequestGovernor requestGovernor,
+                      ObjectMapper objectMapper,
+                      IngestionMetrics ingestionMetrics) {
+
+        this.httpClient = httpClient;
+        this.responseCache = responseCache;
+        this.requestGovernor = requestGovernor;
+        this.objectMapper = objectMapper;
+        this.ingestionMetrics = ingestionMetrics;
+    }
+
+    /**
+     * Десериализира отговора в type (непознатите полета се прескачат без да се строи дърво)
+     * или връща null, ако TMDB не е отговорил с 200.
+     */
+    public <T> T get(String url, Class<T> type) throws IOException, InterruptedException {
+        return get(url, parser -> parser.readValueAs(type));
+    }
+
+    /**
+     * Подава потока на отговора на reader-а или връща null, ако TMDB не е отговорил с 200
+     * (включително когато опитите при 429/5xx са изчерпани).
+     */
+    public <T> T get(String url, ResponseReader<T> reader) throws IOException, InterruptedException {
+        TmdbEndpoint endpoint = TmdbEndpoint.from(url);
+        Optional<InputStream> cachedBody = this.responseCache.open(url);
+        this.ingestionMetrics.recordTmdbCache(endpoint, cachedBody.isPresent());
+        if (cachedBody.isPresent()) {
+            try (InputStream body = cachedBody.get(); JsonParser parser = this.objectMapper.createParser(body)) {
+                return reader.read(parser);
+            }
+        }
+
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).build();
+
+        for (int attempt = 0; ; attempt++) {
+            this.requestGovernor.acquire();
+
+            HttpResponse<InputStream> response;
+            long startNanos = System.nanoTime();
+            try {
+                response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            } catch (IOException exception) {
+                this.ingestionMetrics.recordTmdbRequest(endpoint, IngestionMetrics.STATUS_IO_ERROR, System.nanoTime() - startNanos);
+                this.requestGovernor.onFailure();
+                if (attempt >= this.requestGovernor.getMaxRetries()) throw exception;
+
+                log.warn("TMDB {} request failed (attempt {}): {}", endpoint.tagValue(), attempt + 1, exception.getMessage());
+                Thread.sleep(this.requestGovernor.backoffDelay(attempt, null).toMillis());
+                continue;
+            } catch (InterruptedException | RuntimeException exception) {
+                // shutdownNow() на scope-а прекъсва заявките – без release() мястото изтича и acquire() чака завинаги
+                this.requestGovernor.release();
+                throw exception;
+            }
+
+            int statusCode = response.statusCode();
+            boolean throttled = statusCode == TOO_MANY_REQUESTS || statusCode >= 500;
+            Duration retryAfter = throttled ? parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null)) : null;
+
+            // Мястото се освобождава веднага след хедърите, преди всичко, което може да хвърли
+            if (throttled) this.requestGovernor.onThrottled(retryAfter);
+            else this.requestGovernor.onSuccess();
+
+            // Времето до хедърите; тялото се чете по време на парсването
+            this.ingestionMetrics.recordTmdbRequest(endpoint, String.valueOf(statusCode), System.nanoTime() - startNanos);
+
+            if (throttled) {
+                response.body().close();
+
+                if (attempt >= this.requestGovernor.getMaxRetries()) {
+                    log.warn("TMDB {} request gave up after {} attempts (status {})", endpoint.tagValue(), attempt + 1, statusCode);
+                    return null;
+                }
+
+                Thread.sleep(this.requestGovernor.backoffDelay(attempt, retryAfter).toMillis());
+                continue;
+            }
+
+            if (statusCode != 200) {
+                response.body().close();
+                return null;
+            }
+
+            // Тялото се парсва, докато пристига; кешът получава копие на същите байтове
+            try (TmdbResponseCache.WriteThroughStream body = this.responseCache.writeThrough(url, response.body());
+                 JsonParser parser = this.objectMapper.createParser(body)) {
+
+                T result = reader.read(parser);
+                body.markComplete();
+                return result;
+            }
+        }
+    }
+
+    // Retry-After е или брой секунди, или HTTP дата
+    static Duration parseRetryAfter(String headerValue) {
+        return parseRetryAfter(headerValue, Clock.systemUTC());
+    }
+
+    static Duration parseRetryAfter(String headerValue, Clock clock) {
+        if (headerValue == null || headerValue.isBlank()) return null;
+
+        String value = headerValue.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException ignored) {
+            // не е число – пробваме като дата
+        }
+
+        try {
+            Duration untilDate = Duration.between(ZonedDateTime.now(clock), ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+            return untilDate.isNegative() ? Duration.ZERO : untilDate;
+        } catch (DateTimeParseException exception) {
+            return null;
+        }
+    }
+}
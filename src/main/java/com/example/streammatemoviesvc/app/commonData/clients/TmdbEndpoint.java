@@ -0,0 +1,24 @@
+package com.example.streammatemoviesvc.app.commonData.clients;
+
+import java.net.URI;
+
+public enum TmdbEndpoint {
+    SEARCH, CREDITS, IMAGES, MOVIE, PERSON, LISTING;
+
+    public static TmdbEndpoint from(String url) {
+        String path = URI.create(url).getPath();
+
+        if (path.contains("/3/search/")) return SEARCH;
+        if (path.endsWith("/credits")) return CREDITS;
+        if (path.endsWith("/images")) return IMAGES;
+        if (path.contains("/3/person/")) return PERSON;
+        if (path.matches(".*/3/movie/\\d+$")) return MOVIE;
+
+        // popular, top_rated, discover и т.н.
+        return LISTING;
+    }
+
+    public String tagValue() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.streammatemoviesvc.app.commonData.clients;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Общ регулатор на изходящите заявки към TMDB.
+ * <ul>
+ *     <li>token bucket – средна скорост и допустим burst;</li>
+ *     <li>адаптивна паралелност (AIMD) – расте бавно при успех, намалява наполовина при 429/5xx;</li>
+ *     <li>глобална пауза при Retry-After, за да спрат всички нишки, а не само получилата 429.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class TmdbRequestGovernor {
+
+    // Една поредица от 429 отговори е един сигнал – не намаляваме лимита при всеки от тях
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double ratePerSecond;
+    private final double burst;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final int maxRetries;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitsChanged = lock.newCondition();
+
+    private double tokens;
+    private long lastRefillNanos;
+    private double concurrencyLimit;
+    private int inFlight;
+    private long pausedUntilNanos;
+    private long lastDecreaseNanos;
+
+    @Autowired
+    public TmdbRequestGovernor(@Value("${tmdb.governor.rate-per-second:40}") double ratePerSecond,
+                               @Value("${tmdb.governor.burst:40}") double burst,
+                               @Value("${tmdb.governor.min-concurrency:2}") int minConcurrency,
+                               @Value("${tmdb.governor.max-concurrency:32}") int maxConcurrency,
+                               @Value("${tmdb.governor.max-retries:4}") int maxRetries,
+                               @Value("${tmdb.governor.base-backoff:250ms}") Duration baseBackoff,
+                               @Value("${tmdb.governor.max-backoff:10s}") Duration maxBackoff,
+                               MeterRegistry meterRegistry) {
+
+        this(ratePerSecond, burst, minConcurrency, maxConcurrency, maxRetries, baseBackoff, maxBackoff, meterRegistry, System::nanoTime);
+    }
+
+    // Часовникът се подава отвън само в тестовете – за token bucket-а и паузите без реално чакане
+    TmdbRequestGovernor(double ratePerSecond, double burst, int minConcurrency, int maxConcurrency, int maxRetries,
+                        Duration baseBackoff, Duration maxBackoff, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.minConcurrency = Math.max(1, minConcurrency);
+        this.maxConcurrency = Math.max(this.minConcurrency, maxConcurrency);
+        this.maxRetries = maxRetries;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        this.nanoClock = nanoClock;
+
+        this.tokens = burst;
+        this.lastRefillNanos = nanoClock.getAsLong();
+        this.concurrencyLimit = this.maxConcurrency;
+        this.lastDecreaseNanos = this.lastRefillNanos - DECREASE_COOLDOWN_NANOS;
+
+        Gauge.builder("tmdb.governor.concurrency.limit", this, TmdbRequestGovernor::getConcurrencyLimit)
+                .description("Current AIMD limit of concurrent TMDB requests")
+                .register(meterRegistry);
+        Gauge.builder("tmdb.governor.in.flight", this, TmdbRequestGovernor::getInFlight)
+                .description("TMDB requests currently in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Блокира, докато има токен, свободно място под лимита на паралелност и не тече пауза.
+     * Всяко успешно acquire() трябва да завърши с onSuccess(), onThrottled(), onFailure() или release().
+     */
+    public void acquire() throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            long waitNanos;
+            while ((waitNanos = tryAcquireLocked()) != 0) {
+                if (waitNanos < 0) this.permitsChanged.await();
+                else this.permitsChanged.awaitNanos(waitNanos);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Един опит без чакане: 0 – мястото е взето, -1 – няма място под лимита, иначе наносекунди до следващия опит
+    long tryAcquire() {
+        this.lock.lock();
+        try {
+            return tryAcquireLocked();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private long tryAcquireLocked() {
+        long now = this.nanoClock.getAsLong();
+        refill(now);
+
+        if (now < this.pausedUntilNanos) return this.pausedUntilNanos - now;
+        if (this.inFlight >= (int) this.concurrencyLimit) return -1;
+        if (this.tokens < 1) return Math.max(1, (long) Math.ceil((1 - this.tokens) / this.ratePerSecond * 1_000_000_000L));
+
+        this.tokens -= 1;
+        this.inFlight++;
+        return 0;
+    }
+
+    public void onSuccess() {
+        this.lock.lock();
+        try {
+            this.inFlight--;
+            // Additive increase: +1 за всеки "пълен прозорец" успешни заявки
+            this.concurrencyLimit = Math.min(this.maxConcurrency, this.concurrencyLimit + 1 / this.concurrencyLimit);
+            this.permitsChanged.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 429 или 5xx от TMDB. retryAfter е null, когато TMDB не е изпратил Retry-After.
+     */
+    public void onThrottled(Duration retryAfter) {
+        this.lock.lock();
+        try {
+            this.inFlight--;
+            long now = this.nanoClock.getAsLong();
+            decrease(now);
+            if (retryAfter != null) {
+                this.pausedUntilNanos = Math.max(this.pausedUntilNanos, now + retryAfter.toNanos());
+            }
+            this.permitsChanged.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Мрежова грешка – освобождаваме мястото и намаляваме лимита като при 5xx
+    public void onFailure() {
+        onThrottled(null);
+    }
+
+    // Заявката е прекъсната от нашата страна (interrupt, грешка в клиента) – само освобождаваме мястото
+    public void release() {
+        this.lock.lock();
+        try {
+            this.inFlight--;
+            this.permitsChanged.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Колко да чака нишката преди следващия опит: Retry-After, ако го има,
+     * иначе експоненциален backoff с "full jitter".
+     */
+    public Duration backoffDelay(int attempt, Duration retryAfter) {
+        if (retryAfter != null) {
+            // Малко разсейване, за да не се събудят всички чакащи нишки в един и същ момент
+            return retryAfter.plusMillis(ThreadLocalRandom.current().nextLong(0, 250));
+        }
+
+        long exponentialMillis = Math.min(this.maxBackoff.toMillis(), this.baseBackoff.toMillis() << Math.min(attempt, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(0, exponentialMillis + 1));
+    }
+
+    public int getMaxRetries() {
+        return this.maxRetries;
+    }
+
+    public double getConcurrencyLimit() {
+        this.lock.lock();
+        try {
+            return this.concurrencyLimit;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        this.lock.lock();
+        try {
+            return this.inFlight;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void refill(long now) {
+        double elapsedSeconds = (now - this.lastRefillNanos) / 1_000_000_000.0;
+        this.tokens = Math.min(this.burst, this.tokens + elapsedSeconds * this.ratePerSecond);
+        this.lastRefillNanos = now;
+    }
+
+    private void decrease(long now) {
+        if (now - this.lastDecreaseNanos < DECREASE_COOLDOWN_NANOS) return;
+
+        this.lastDecreaseNanos = now;
+        this.concurrencyLimit = Math.max(this.minConcurrency, this.concurrencyLimit / 2);
+        log.info("TMDB throttling detected, concurrency limit lowered to {}", (int) this.concurrencyLimit);
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.streammatemoviesvc.app.commonData.clients;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Дисков кеш на TMDB отговорите. Ключът е URL-ът без api_key, всеки endpoint има собствен TTL,
+ * а при надвишаване на лимита се трият най-отдавна използваните записи.
+ */
+@Slf4j
+@Component
+public class TmdbResponseCache {
+
+    private static final String FILE_EXTENSION = ".json";
+    private static final String TEMP_FILE_PREFIX = "tmdb-";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxSizeBytes;
+    private final Map<TmdbEndpoint, Duration> ttls = new EnumMap<>(TmdbEndpoint.class);
+    private final Clock clock;
+
+    private final Map<String, CacheEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong totalSizeBytes = new AtomicLong();
+
+    @Autowired
+    public TmdbResponseCache(@Value("${tmdb.cache.enabled:true}") boolean enabled,
+                             @Value("${tmdb.cache.dir:./tmdb-cache}") String directory,
+                             @Value("${tmdb.cache.max-size-mb:512}") long maxSizeMb,
+                             @Value("${tmdb.cache.ttl.search:1h}") Duration searchTtl,
+                             @Value("${tmdb.cache.ttl.listing:6h}") Duration listingTtl,
+                             @Value("${tmdb.cache.ttl.movie:1d}") Duration movieTtl,
+                             @Value("${tmdb.cache.ttl.credits:1d}") Duration creditsTtl,
+                             @Value("${tmdb.cache.ttl.images:7d}") Duration imagesTtl,
+                             @Value("${tmdb.cache.ttl.person:7d}") Duration personTtl) {
+
+        this(enabled, directory, maxSizeMb, searchTtl, listingTtl, movieTtl, creditsTtl, imagesTtl, personTtl, Clock.systemUTC());
+    }
+
+    // Часовникът се подава отвън само в тестовете – за TTL и LRU без реално чакане
+    TmdbResponseCache(boolean enabled, String directory, long maxSizeMb,
+                      Duration searchTtl, Duration listingTtl, Duration movieTtl,
+                      Duration creditsTtl, Duration imagesTtl, Duration personTtl, Clock clock) {
+
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+
+        this.ttls.put(TmdbEndpoint.SEARCH, searchTtl);
+        this.ttls.put(TmdbEndpoint.LISTING, listingTtl);
+        this.ttls.put(TmdbEndpoint.MOVIE, movieTtl);
+        this.ttls.put(TmdbEndpoint.CREDITS, creditsTtl);
+        this.ttls.put(TmdbEndpoint.IMAGES, imagesTtl);
+        this.ttls.put(TmdbEndpoint.PERSON, personTtl);
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void loadIndex() throws IOException {
+        if (!this.enabled) return;
+
+        Files.createDirectories(this.directory);
+
+        // Временни файлове от прекъснати записи (срив, kill -9) – никой не ги чете, само заемат място
+        try (DirectoryStream<Path> tempFiles = Files.newDirectoryStream(this.directory, TEMP_FILE_PREFIX + "*" + TEMP_FILE_EXTENSION)) {
+            for (Path tempFile : tempFiles) deleteQuietly(tempFile);
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*" + FILE_EXTENSION)) {
+            for (Path file : files) {
+                long size = Files.size(file);
+                long writtenAt = Files.getLastModifiedTime(file).toMillis();
+
+                this.entries.put(file.getFileName().toString(), new CacheEntry(size, writtenAt));
+                this.totalSizeBytes.addAndGet(size);
+            }
+        }
+
+        log.info("TMDB cache loaded {} entries ({} KB) from {}", this.entries.size(),
+                this.totalSizeBytes.get() / 1024, this.directory.toAbsolutePath());
+    }
+
+    /**
+     * Отваря кеширания отговор за четене като поток или връща празно, ако няма валиден запис.
+     */
+    public Optional<InputStream> open(String url) {
+        if (!this.enabled) return Optional.empty();
+
+        TmdbEndpoint endpoint = TmdbEndpoint.from(url);
+        String fileName = fileName(endpoint, url);
+        CacheEntry entry = this.entries.get(fileName);
+        if (entry == null) return Optional.empty();
+
+        if (this.clock.millis() - entry.writtenAt > this.ttls.get(endpoint).toMillis()) {
+            remove(fileName);
+            return Optional.empty();
+        }
+
+        try {
+            InputStream body = Files.newInputStream(this.directory.resolve(fileName));
+            entry.lastAccessAt = this.clock.millis();
+            return Optional.of(body);
+        } catch (IOException exception) {
+            remove(fileName);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Обвива тялото на HTTP отговора така, че прочетените байтове да се записват и в кеша.
+     * Записът влиза в кеша само ако потокът е маркиран като успешно прочетен преди close().
+     */
+    public WriteThroughStream writeThrough(String url, InputStream source) {
+        if (!this.enabled) return new WriteThroughStream(source, null, null, null);
+
+        String fileName = fileName(TmdbEndpoint.from(url), url);
+        try {
+            Path tempFile = Files.createTempFile(this.directory, TEMP_FILE_PREFIX, TEMP_FILE_EXTENSION);
+            return new WriteThroughStream(source, fileName, tempFile, new BufferedOutputStream(Files.newOutputStream(tempFile)));
+        } catch (IOException exception) {
+            log.warn("Could not create TMDB cache entry {}: {}", fileName, exception.getMessage());
+            return new WriteThroughStream(source, null, null, null);
+        }
+    }
+
+    private void commit(String fileName, Path tempFile, long sizeBytes) {
+        try {
+            // Атомарното преместване гарантира, че никой не чете наполовина записан отговор
+            Files.move(tempFile, this.directory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            log.warn("Could not write TMDB cache entry {}: {}", fileName, exception.getMessage());
+            deleteQuietly(tempFile);
+            return;
+        }
+
+        CacheEntry previous = this.entries.put(fileName, new CacheEntry(sizeBytes, this.clock.millis()));
+        this.totalSizeBytes.addAndGet(sizeBytes - (previous == null ? 0 : previous.sizeBytes));
+
+        if (this.totalSizeBytes.get() > this.maxSizeBytes) evictLeastRecentlyUsed();
+    }
+
+    private synchronized void evictLeastRecentlyUsed() {
+        long targetSize = this.maxSizeBytes * 9 / 10;
+        if (this.totalSizeBytes.get() <= targetSize) return;
+
+        List<Map.Entry<String, CacheEntry>> candidates = new ArrayList<>(this.entries.entrySet());
+        candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().lastAccessAt));
+
+        for (Map.Entry<String, CacheEntry> candidate : candidates) {
+            if (this.totalSizeBytes.get() <= targetSize) break;
+            remove(candidate.getKey());
+        }
+    }
+
+    private void remove(String fileName) {
+        CacheEntry removed = this.entries.remove(fileName);
+        if (removed != null) this.totalSizeBytes.addAndGet(-removed.sizeBytes);
+
+        try {
+            Files.deleteIfExists(this.directory.resolve(fileName));
+        } catch (IOException exception) {
+            log.warn("Could not delete TMDB cache entry {}: {}", fileName, exception.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // временният файл ще бъде презаписан или изтрит при следващото стартиране
+        }
+    }
+
+    static String cacheKey(String url) {
+        // API ключът не е част от идентичността на ресурса
+        String withoutKey = url.replaceAll("api_key=[^&]*&?", "");
+        if (withoutKey.endsWith("?") || withoutKey.endsWith("&")) {
+            withoutKey = withoutKey.substring(0, withoutKey.length() - 1);
+        }
+        return withoutKey;
+    }
+
+    private static String fileName(TmdbEndpoint endpoint, String url) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(cacheKey(url).getBytes(StandardCharsets.UTF_8));
+            return endpoint.tagValue() + "-" + HexFormat.of().formatHex(hash) + FILE_EXTENSION;
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * Поток, който копира всичко прочетено във временен файл. При close() дочита останалото
+     * (парсерът може да спре по-рано), за да се кешира пълното тяло, и премества файла в кеша.
+     */
+    public class WriteThroughStream extends FilterInputStream {
+
+        private final String fileName;
+        private final Path tempFile;
+        private OutputStream copy;
+
+        private long sizeBytes;
+        private boolean complete;
+        private boolean closed;
+
+        private WriteThroughStream(InputStream source, String fileName, Path tempFile, OutputStream copy) {
+            super(source);
+            this.fileName = fileName;
+            this.tempFile = tempFile;
+            this.copy = copy;
+        }
+
+        public void markComplete() {
+            this.complete = true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) copy(new byte[]{(byte) value}, 0, 1);
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) copy(buffer, offset, count);
+            return count;
+        }
+
+        // skip() на FilterInputStream би прескочил копирането – четем вместо това
+        @Override
+        public long skip(long count) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(8192, Math.max(0, count))];
+            long skipped = 0;
+            while (skipped < count) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, count - skipped));
+                if (read == -1) break;
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed) return;
+            this.closed = true;
+
+            try {
+                if (this.copy != null && this.complete) {
+                    byte[] buffer = new byte[8192];
+                    while (read(buffer, 0, buffer.length) != -1) {
+                        // дочитаме тялото – read() го копира във файла
+                    }
+                }
+            } finally {
+                super.close();
+                if (this.copy != null) {
+                    this.copy.close();
+                    if (this.complete) commit(this.fileName, this.tempFile, this.sizeBytes);
+                    else deleteQuietly(this.tempFile);
+                }
+            }
+        }
+
+        // Грешка при писане в кеша не трябва да проваля самата заявка – просто спираме да кешираме
+        private void copy(byte[] buffer, int offset, int length) {
+            if (this.copy == null) return;
+            try {
+                this.copy.write(buffer, offset, length);
+                this.sizeBytes += length;
+            } catch (IOException exception) {
+                log.warn("Could not write TMDB cache entry {}: {}", this.fileName, exception.getMessage());
+                try {
+                    this.copy.close();
+                } catch (IOException ignored) {
+                    // файлът така или иначе се трие
+                }
+                this.copy = null;
+                deleteQuietly(this.tempFile);
+            }
+        }
+    }
+
+    private static class CacheEntry {
+        private final long sizeBytes;
+        private final long writtenAt;
+        private volatile long lastAccessAt;
+
+        private CacheEntry(long sizeBytes, long writtenAt) {
+            this.sizeBytes = sizeBytes;
+            this.writtenAt = writtenAt;
+            this.lastAccessAt = writtenAt;
+        }
+    }
+}
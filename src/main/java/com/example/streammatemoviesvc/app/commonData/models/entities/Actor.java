@@ -13,7 +13,9 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "actors")
+@Table(name = "actors", indexes = {
+        @Index(name = "idx_actors_image_url", columnList = "image_url")
+})
 @Getter
 @Setter
 @Accessors(chain = true)
@@ -23,6 +25,9 @@ public class Actor {
     @GeneratedValue
     private UUID id;
 
+    @Column(name = "tmdb_id", unique = true)
+    private Long tmdbId;
+
     @Column(name = "image_url")
     private String imageURL;
 
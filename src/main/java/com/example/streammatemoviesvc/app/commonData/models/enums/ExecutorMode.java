@@ -0,0 +1,5 @@
+package com.example.streammatemoviesvc.app.commonData.models.enums;
+
+public enum ExecutorMode {
+    PLATFORM, VIRTUAL
+}
@@ -0,0 +1,5 @@
+package com.example.streammatemoviesvc.app.commonData.models.enums;
+
+public enum IngestionJobStatus {
+    QUEUED, RUNNING, COMPLETED, FAILED
+}
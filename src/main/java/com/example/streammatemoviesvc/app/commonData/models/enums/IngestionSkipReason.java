@@ -0,0 +1,10 @@
+package com.example.streammatemoviesvc.app.commonData.models.enums;
+
+public enum IngestionSkipReason {
+    NO_POSTER, NO_RELEASE_DATE, FUTURE_RELEASE, BEFORE_2000, ZERO_RATING,
+    NO_CAST, TOO_FEW_IMAGES, NO_GENRES, DUPLICATE;
+
+    public String tagValue() {
+        return name().toLowerCase();
+    }
+}
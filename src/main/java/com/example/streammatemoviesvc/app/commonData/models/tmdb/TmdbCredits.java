@@ -0,0 +1,19 @@
+package com.example.streammatemoviesvc.app.commonData.models.tmdb;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record TmdbCredits(@JsonProperty("cast") List<CastMember> cast) {
+
+    public List<CastMember> cast() {
+        return this.cast == null ? List.of() : this.cast;
+    }
+
+    // От cast-а ни трябва само id-то – детайлите идват от /person
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record CastMember(@JsonProperty("id") Long id) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.streammatemoviesvc.app.commonData.models.tmdb;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record TmdbMovieDetails(@JsonProperty("tagline") String tagline,
+                               @JsonProperty("genres") List<Genre> genres) {
+
+    public List<Genre> genres() {
+        return this.genres == null ? List.of() : this.genres;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Genre(@JsonProperty("name") String name) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.streammatemoviesvc.app.commonData.models.tmdb;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Един резултат от search/movie, popular, discover и т.н. – само полетата, които записваме.
+ * Числата се пазят като текст (както идват от TMDB), например vote_average "7.2".
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record TmdbMovieResult(@JsonProperty("id") long id,
+                              @JsonProperty("title") String title,
+                              @JsonProperty("overview") String overview,
+                              @JsonProperty("release_date") String releaseDate,
+                              @JsonProperty("backdrop_path") String backdropPath,
+                              @JsonProperty("poster_path") String posterPath,
+                              @JsonProperty("vote_average") String voteAverage) {
+}
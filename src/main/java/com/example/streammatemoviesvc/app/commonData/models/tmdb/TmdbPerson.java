@@ -0,0 +1,24 @@
+package com.example.streammatemoviesvc.app.commonData.models.tmdb;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record TmdbPerson(@JsonProperty("name") String name,
+                         @JsonProperty("profile_path") String profilePath,
+                         @JsonProperty("biography") String biography,
+                         @JsonProperty("birthday") String birthday,
+                         @JsonProperty("known_for_department") String knownForDepartment,
+                         @JsonProperty("popularity") String popularity,
+                         @JsonProperty("place_of_birth") String placeOfBirth,
+                         @JsonProperty("gender") String gender,
+                         @JsonProperty("external_ids") ExternalIds externalIds) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record ExternalIds(@JsonProperty("facebook_id") String facebookId,
+                              @JsonProperty("instagram_id") String instagramId,
+                              @JsonProperty("twitter_id") String twitterId,
+                              @JsonProperty("youtube_id") String youtubeId,
+                              @JsonProperty("imdb_id") String imdbId) {
+    }
+}
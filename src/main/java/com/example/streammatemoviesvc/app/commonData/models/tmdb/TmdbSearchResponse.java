@@ -0,0 +1,15 @@
+package com.example.streammatemoviesvc.app.commonData.models.tmdb;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record TmdbSearchResponse(@JsonProperty("results") List<TmdbMovieResult> results,
+                                 @JsonProperty("total_pages") int totalPages) {
+
+    public List<TmdbMovieResult> results() {
+        return this.results == null ? List.of() : this.results;
+    }
+}
@@ -1,13 +1,37 @@
 package com.example.streammatemoviesvc.app.commonData.repositories;
 
 import com.example.streammatemoviesvc.app.commonData.models.entities.Actor;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface ActorRepository extends JpaRepository<Actor, UUID> {
-    Optional<Actor> findByNameInRealLifeAndImageURL(String nameInRealLife, String imageURL);
+
+    @Query("SELECT a.tmdbId, a.id FROM Actor a WHERE a.tmdbId IN :tmdbIds")
+    List<Object[]> findIdsByTmdbIdIn(@Param("tmdbIds") Collection<Long> tmdbIds);
+
+    // Съвпаденията по TMDB id и legacy кандидатите (без tmdb_id) със същите снимки с една заявка.
+    // Подредбата по id кара паралелните ingestion-и да избират един и същ legacy ред за един човек
+    @Query("SELECT a.tmdbId, a.id, a.nameInRealLife, a.imageURL FROM Actor a WHERE a.tmdbId IN :tmdbIds " +
+            "OR (a.tmdbId IS NULL AND a.imageURL IN :imageURLs) ORDER BY a.id")
+    List<Object[]> findIdsOrLegacyActors(@Param("tmdbIds") Collection<Long> tmdbIds,
+                                         @Param("imageURLs") Collection<String> imageURLs);
+
+    // По реда от TMDB credits (movies_actors.cast_order)
+    @Query("SELECT a FROM Movie m JOIN m.castList a WHERE m.id = :movieId ORDER BY INDEX(a)")
+    List<Actor> findCastByMovieId(@Param("movieId") UUID movieId, Pageable pageable);
+
+    boolean existsByTmdbIdIsNull();
+
+    @Modifying
+    @Query("UPDATE Actor a SET a.tmdbId = :tmdbId WHERE a.id = :id AND a.tmdbId IS NULL")
+    int assignTmdbId(@Param("id") UUID id, @Param("tmdbId") Long tmdbId);
 }
@@ -0,0 +1,201 @@
+package com.example.streammatemoviesvc.app.commonData.services;
+
+import com.example.streammatemoviesvc.app.commonData.models.entities.Actor;
+import com.example.streammatemoviesvc.app.commonData.repositories.ActorRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Свързва TMDB person id с id-то на актьора в базата. Пази ограничен LRU кеш,
+ * а пропуските се решават с една заявка за целия cast.
+ */
+@Slf4j
+@Component
+public class ActorIdentityMap {
+
+    // Паралелен ingestion може да запише същия актьор междувременно – тогава редът се пропуска вместо да гърми
+    private static final String INSERT_ACTOR_SQL = "INSERT INTO actors (id, tmdb_id, name_in_real_life, image_url, biography, " +
+            "facebook_username, instagram_username, twitter_username, youtube_channel, imdb_id, birthday, known_for, " +
+            "place_of_birth, gender, popularity) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (tmdb_id) DO NOTHING";
+
+    private final ActorRepository actorRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, UUID> identities;
+
+    // Актьорите отпреди tmdb_id се откриват по име и снимка, докато има такива
+    private volatile Boolean legacyActorsRemaining;
+
+    @Autowired
+    public ActorIdentityMap(ActorRepository actorRepository,
+                            TransactionTemplate transactionTemplate,
+                            JdbcTemplate jdbcTemplate,
+                            @Value("${actors.identity-cache.max-size:10000}") int maxSize) {
+
+        this.actorRepository = actorRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.identities = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UUID> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Връща id-тата на вече записаните актьори от cast-а, ключувани по TMDB id.
+     */
+    public Map<Long, UUID> resolve(Collection<Actor> cast) {
+        Map<Long, UUID> resolved = new HashMap<>();
+        List<Long> missingTmdbIds = new ArrayList<>();
+
+        synchronized (this.identities) {
+            for (Actor actor : cast) {
+                UUID id = this.identities.get(actor.getTmdbId());
+                if (id != null) resolved.put(actor.getTmdbId(), id);
+                else missingTmdbIds.add(actor.getTmdbId());
+            }
+        }
+
+        if (missingTmdbIds.isEmpty()) return resolved;
+
+        // Докато има legacy актьори, кандидатите им идват в същата заявка – без отделна проверка на филм
+        List<String> imageURLs = hasLegacyActors()
+                ? cast.stream().filter(actor -> !resolved.containsKey(actor.getTmdbId()))
+                    .map(Actor::getImageURL).filter(Objects::nonNull).distinct().toList()
+                : List.of();
+        List<Object[]> rows = imageURLs.isEmpty()
+                ? this.actorRepository.findIdsByTmdbIdIn(missingTmdbIds)
+                : this.actorRepository.findIdsOrLegacyActors(missingTmdbIds, imageURLs);
+
+        List<Object[]> legacyActors = new ArrayList<>();
+        for (Object[] row : rows) {
+            Long tmdbId = (Long) row[0];
+            UUID id = (UUID) row[1];
+            if (tmdbId == null) {
+                legacyActors.add(row);
+                continue;
+            }
+
+            resolved.put(tmdbId, id);
+            remember(tmdbId, id);
+        }
+
+        if (!legacyActors.isEmpty()) {
+            List<Actor> unresolved = cast.stream().filter(actor -> !resolved.containsKey(actor.getTmdbId())).toList();
+            resolveLegacyActors(unresolved, legacyActors, resolved);
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Записва новите актьори с един batch и им слага id-тата от базата. Ако друг филм е записал
+     * някой от тях междувременно, актьорът получава неговото id. Вика се в транзакцията на филма.
+     */
+    public void insertAbsent(List<Actor> actors) {
+        if (actors.isEmpty()) return;
+
+        actors.forEach(actor -> actor.setId(UUID.randomUUID()));
+        this.jdbcTemplate.batchUpdate(INSERT_ACTOR_SQL, actors, actors.size(), (statement, actor) -> {
+            statement.setObject(1, actor.getId());
+            statement.setObject(2, actor.getTmdbId());
+            statement.setString(3, actor.getNameInRealLife());
+            statement.setString(4, actor.getImageURL());
+            statement.setString(5, actor.getBiography());
+            statement.setString(6, actor.getFacebookUsername());
+            statement.setString(7, actor.getInstagramUsername());
+            statement.setString(8, actor.getTwitterUsername());
+            statement.setString(9, actor.getYoutubeChannel());
+            statement.setString(10, actor.getImdbId());
+            statement.setString(11, actor.getBirthday());
+            statement.setString(12, actor.getKnownFor());
+            statement.setString(13, actor.getPlaceOfBirth());
+            statement.setString(14, actor.getGender());
+            statement.setString(15, actor.getPopularity());
+        });
+
+        // reWriteBatchedInserts не връща броя по редове, затова питаме кое id е спечелило
+        List<Long> tmdbIds = actors.stream().map(Actor::getTmdbId).filter(Objects::nonNull).toList();
+        if (tmdbIds.isEmpty()) return;
+
+        Map<Long, UUID> savedIds = new HashMap<>();
+        for (Object[] row : this.actorRepository.findIdsByTmdbIdIn(tmdbIds)) {
+            savedIds.put((Long) row[0], (UUID) row[1]);
+        }
+        for (Actor actor : actors) {
+            UUID savedId = savedIds.get(actor.getTmdbId());
+            if (savedId != null) actor.setId(savedId);
+        }
+    }
+
+    public void remember(Long tmdbId, UUID id) {
+        if (tmdbId == null || id == null) return;
+
+        synchronized (this.identities) {
+            this.identities.put(tmdbId, id);
+        }
+    }
+
+    // Редовете идват като [tmdb_id (null), id, name_in_real_life, image_url]
+    private void resolveLegacyActors(List<Actor> unresolved, List<Object[]> legacyActors, Map<Long, UUID> resolved) {
+        boolean assigned = false;
+        for (Actor actor : unresolved) {
+            for (Object[] legacyActor : legacyActors) {
+                if (!Objects.equals(actor.getNameInRealLife(), legacyActor[2])
+                        || !Objects.equals(actor.getImageURL(), legacyActor[3])) continue;
+
+                UUID id = assignTmdbId((UUID) legacyActor[1], actor.getTmdbId());
+                if (id != null) {
+                    resolved.put(actor.getTmdbId(), id);
+                    remember(actor.getTmdbId(), id);
+                }
+                assigned = true;
+                break;
+            }
+        }
+
+        // Може току-що да сме свързали последните – тогава спираме да търсим по име и снимка
+        if (assigned) refreshLegacyActors();
+    }
+
+    // Записваме TMDB id-то, за да не минаваме през този път повече. Ако паралелен ingestion е дал id-то
+    // на друг ред (дублиран legacy актьор или нов запис), unique индексът отказва – тогава ползваме неговия ред
+    private UUID assignTmdbId(UUID legacyId, Long tmdbId) {
+        try {
+            Integer updated = this.transactionTemplate.execute(status -> this.actorRepository.assignTmdbId(legacyId, tmdbId));
+            if (updated != null && updated > 0) return legacyId;
+        } catch (DataIntegrityViolationException exception) {
+            log.info("TMDB person {} was linked to another actor concurrently: {}", tmdbId, exception.getMostSpecificCause().getMessage());
+        }
+
+        List<Object[]> winner = this.actorRepository.findIdsByTmdbIdIn(List.of(tmdbId));
+        return winner.isEmpty() ? null : (UUID) winner.get(0)[1];
+    }
+
+    private boolean hasLegacyActors() {
+        if (this.legacyActorsRemaining == null) refreshLegacyActors();
+        return this.legacyActorsRemaining;
+    }
+
+    // Нови legacy актьори не се появяват, затова флагът се преизчислява само след свързване на актьори
+    private void refreshLegacyActors() {
+        this.legacyActorsRemaining = this.actorRepository.existsByTmdbIdIsNull();
+    }
+}
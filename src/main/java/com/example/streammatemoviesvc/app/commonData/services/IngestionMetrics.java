@@ -0,0 +1,92 @@
+package com.example.streammatemoviesvc.app.commonData.services;
+
+import com.example.streammatemoviesvc.app.commonData.clients.TmdbEndpoint;
+import com.example.streammatemoviesvc.app.commonData.models.enums.IngestionSkipReason;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метриките на ingestion pipeline-а (изложени през /actuator/prometheus):
+ * <ul>
+ *     <li>tmdb.requests – време на всяка TMDB заявка по endpoint и статус (с хистограма);</li>
+ *     <li>tmdb.cache – попадения и пропуски на дисковия кеш по endpoint;</li>
+ *     <li>ingestion.movies – записани, пропуснати (с причината) и неуспешни филми;</li>
+ *     <li>ingestion.save – времето на транзакцията, която записва филма.</li>
+ * </ul>
+ */
+@Component
+public class IngestionMetrics {
+
+    public static final String STATUS_IO_ERROR = "io_error";
+
+    private final MeterRegistry meterRegistry;
+    private final Timer saveTimer;
+    private final Counter savedCounter;
+
+    @Autowired
+    public IngestionMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+
+        this.saveTimer = Timer.builder("ingestion.save")
+                .description("Time spent persisting an ingested movie")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        this.savedCounter = Counter.builder("ingestion.movies")
+                .description("Ingested TMDB results by outcome")
+                .tag("outcome", "saved")
+                .tag("reason", "none")
+                .register(meterRegistry);
+    }
+
+    public void recordTmdbRequest(TmdbEndpoint endpoint, String status, long durationNanos) {
+        // Builder-ът връща вече регистрирания meter, ако има такъв със същите тагове
+        Timer.builder("tmdb.requests")
+                .description("TMDB HTTP requests")
+                .tag("endpoint", endpoint.tagValue())
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(this.meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordTmdbCache(TmdbEndpoint endpoint, boolean hit) {
+        Counter.builder("tmdb.cache")
+                .description("TMDB disk cache lookups")
+                .tag("endpoint", endpoint.tagValue())
+                .tag("result", hit ? "hit" : "miss")
+                .register(this.meterRegistry)
+                .increment();
+    }
+
+    public void recordSaved() {
+        this.savedCounter.increment();
+    }
+
+    public void recordSkipped(IngestionSkipReason reason) {
+        Counter.builder("ingestion.movies")
+                .description("Ingested TMDB results by outcome")
+                .tag("outcome", "skipped")
+                .tag("reason", reason.tagValue())
+                .register(this.meterRegistry)
+                .increment();
+    }
+
+    public void recordFailed() {
+        Counter.builder("ingestion.movies")
+                .description("Ingested TMDB results by outcome")
+                .tag("outcome", "failed")
+                .tag("reason", "error")
+                .register(this.meterRegistry)
+                .increment();
+    }
+
+    public Timer getSaveTimer() {
+        return this.saveTimer;
+    }
+}
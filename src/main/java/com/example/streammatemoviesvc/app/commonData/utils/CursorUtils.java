@@ -0,0 +1,53 @@
+package com.example.streammatemoviesvc.app.commonData.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Кодира и декодира непрозрачните курсори за keyset пагинация.
+ * Курсорът сочи последния върнат ред по ключа (created_at, id).
+ */
+public class CursorUtils {
+
+    private static final String SEPARATOR = "|";
+
+    public record Cursor(Instant createdAt, UUID id) {
+    }
+
+    public static String encode(Instant createdAt, UUID id) {
+        String raw = createdAt.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Cursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separatorIndex = raw.indexOf(SEPARATOR);
+
+            return new Cursor(Instant.parse(raw.substring(0, separatorIndex)),
+                    UUID.fromString(raw.substring(separatorIndex + 1)));
+        } catch (RuntimeException exception) {
+            throw new IllegalArgumentException("Invalid cursor!", exception);
+        }
+    }
+
+    public static boolean isBlank(String token) {
+        return token == null || token.isBlank();
+    }
+
+    // Native заявките връщат timestamp колоните с различен тип според драйвера
+    public static Instant toInstant(Object value) {
+        if (value == null) return null;
+        if (value instanceof Instant instant) return instant;
+        if (value instanceof Timestamp timestamp) return timestamp.toInstant();
+        if (value instanceof OffsetDateTime offsetDateTime) return offsetDateTime.toInstant();
+        if (value instanceof ZonedDateTime zonedDateTime) return zonedDateTime.toInstant();
+
+        throw new IllegalArgumentException("Unsupported timestamp type: " + value.getClass().getName());
+    }
+}
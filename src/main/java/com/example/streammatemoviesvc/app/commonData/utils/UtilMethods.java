@@ -1,56 +1,75 @@
 package com.example.streammatemoviesvc.app.commonData.utils;
 
+import com.example.streammatemoviesvc.app.commonData.clients.TmdbClient;
 import com.example.streammatemoviesvc.app.commonData.models.entities.Actor;
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.example.streammatemoviesvc.app.commonData.models.tmdb.TmdbCredits;
+import com.example.streammatemoviesvc.app.commonData.models.tmdb.TmdbPerson;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Async;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 
+@Slf4j
 public class UtilMethods {
 
 
     @Async
     public CompletableFuture<List<Actor>> extractActors(String actorsURL,
-                                                        HttpClient httpClient,
+                                                        TmdbClient tmdbClient,
                                                         String TMDB_BASE_URL,
                                                         String TMDB_API_KEY,
-                                                        Executor asyncExecutor) {
+                                                        Executor asyncExecutor,
+                                                        int maxActors,
+                                                        int maxConcurrency) {
 
-        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(actorsURL)).build();
         return CompletableFuture.supplyAsync(() -> {
             List<Actor> allCast = new ArrayList<>();
 
             try {
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                TmdbCredits credits = tmdbClient.get(actorsURL, TmdbCredits.class);
 
-                if (response.statusCode() == 200) {
-                    JsonObject jsonObject = new Gson().fromJson(response.body(), JsonObject.class);
-                    JsonArray resultsArray = jsonObject.getAsJsonArray("cast");
-
-                    for (JsonElement jsonElement : resultsArray) {
-                        JsonObject jsonObj = jsonElement.getAsJsonObject();
-
-                        String actorId = getJsonValue(jsonObj, "id");
-                        if (actorId.isEmpty()) continue;
+                if (credits != null) {
+                    List<String> actorIds = new ArrayList<>();
+                    for (TmdbCredits.CastMember castMember : credits.cast()) {
+                        if (castMember.id() != null) actorIds.add(String.valueOf(castMember.id()));
+                    }
 
-                        CompletableFuture<Actor> asyncResponse = extractDeepActorInfoAsync(actorId, TMDB_BASE_URL, TMDB_API_KEY, httpClient, asyncExecutor);
-                        Actor reponseActor = asyncResponse.get();
-                        if (reponseActor != null) allCast.add(reponseActor);
+                    // Пускаме заявките на вълни от най-много maxConcurrency и спираме, щом съберем maxActors
+                    int window = Math.max(1, maxConcurrency);
+                    int next = 0;
+                    while (next < actorIds.size() && allCast.size() < maxActors) {
+                        int batchSize = Math.min(window, maxActors - allCast.size());
+                        List<String> batchIds = actorIds.subList(next, Math.min(next + batchSize, actorIds.size()));
+                        next += batchIds.size();
+
+                        List<CompletableFuture<Actor>> batch = new ArrayList<>();
+                        for (String actorId : batchIds) {
+                            batch.add(extractDeepActorInfoAsync(actorId, TMDB_BASE_URL, TMDB_API_KEY, tmdbClient, asyncExecutor));
+                        }
+
+                        // Взимаме резултатите по реда от TMDB, за да е стабилна подредбата на cast-а
+                        for (CompletableFuture<Actor> asyncResponse : batch) {
+                            Actor reponseActor = asyncResponse.get();
+                            if (reponseActor != null && allCast.size() < maxActors) allCast.add(reponseActor);
+                        }
                     }
                 }
 
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
             } catch (Exception exception) {
-                System.out.println(exception.getMessage());
+                log.warn("Failed to extract cast from {}: {}", actorsURL.replaceAll("api_key=[^&]*", "api_key=***"), exception.getMessage());
             }
 
             return allCast;
@@ -61,59 +80,83 @@ public class UtilMethods {
     public CompletableFuture<Actor> extractDeepActorInfoAsync(String actorId,
                                                               String TMDB_BASE_URL,
                                                               String TMDB_API_KEY,
-                                                              HttpClient httpClient,
+                                                              TmdbClient tmdbClient,
                                                               Executor asyncExecutor) {
 
         return CompletableFuture.supplyAsync(() -> {
             String searchQuery = TMDB_BASE_URL + "/3/person/" + actorId + "?api_key=" + TMDB_API_KEY + "&append_to_response=external_ids";
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(searchQuery)).build();
 
             try {
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    JsonObject jsonObject = new Gson().fromJson(response.body(), JsonObject.class);
-                    String name = getJsonValue(jsonObject, "name");
-                    String actorImage = getJsonValue(jsonObject, "profile_path");
-                    String biography = getJsonValue(jsonObject, "biography");
-                    String birthday = getJsonValue(jsonObject, "birthday");
-                    String knownFor = getJsonValue(jsonObject, "known_for_department");
-                    String popularity = getJsonValue(jsonObject, "popularity");
-                    String placeOfBirth = getJsonValue(jsonObject, "place_of_birth");
-                    String gender = getJsonValue(jsonObject, "gender");
-
-                    JsonObject externalIds = jsonObject.has("external_ids") ? jsonObject.getAsJsonObject("external_ids") : null;
-                    String facebookUsername = getExternalId(externalIds, "facebook_id");
-                    String instagramUsername = getExternalId(externalIds, "instagram_id");
-                    String twitterUsername = getExternalId(externalIds, "twitter_id");
-                    String youtubeChannel = getExternalId(externalIds, "youtube_id");
-                    String imdbId = getExternalId(externalIds, "imdb_id");
-
-                    return new Actor().setNameInRealLife(name).setImageURL(actorImage).setBiography(biography).setFacebookUsername(facebookUsername)
+                TmdbPerson person = tmdbClient.get(searchQuery, TmdbPerson.class);
+
+                if (person != null) {
+                    String name = orEmpty(person.name());
+                    String actorImage = orEmpty(person.profilePath());
+                    String biography = orEmpty(person.biography());
+                    String birthday = orEmpty(person.birthday());
+                    String knownFor = orEmpty(person.knownForDepartment());
+                    String popularity = orEmpty(person.popularity());
+                    String placeOfBirth = orEmpty(person.placeOfBirth());
+                    String gender = orEmpty(person.gender());
+
+                    TmdbPerson.ExternalIds externalIds = person.externalIds();
+                    String facebookUsername = externalIds == null ? "" : orEmpty(externalIds.facebookId());
+                    String instagramUsername = externalIds == null ? "" : orEmpty(externalIds.instagramId());
+                    String twitterUsername = externalIds == null ? "" : orEmpty(externalIds.twitterId());
+                    String youtubeChannel = externalIds == null ? "" : orEmpty(externalIds.youtubeId());
+                    String imdbId = externalIds == null ? "" : orEmpty(externalIds.imdbId());
+
+                    return new Actor().setTmdbId(Long.valueOf(actorId)).setNameInRealLife(name).setImageURL(actorImage).setBiography(biography).setFacebookUsername(facebookUsername)
                             .setInstagramUsername(instagramUsername).setTwitterUsername(twitterUsername).setYoutubeChannel(youtubeChannel)
                             .setImdbId(imdbId).setBirthday(birthday).setKnownFor(knownFor).setPopularity(popularity).setPlaceOfBirth(placeOfBirth)
                             .setGender(gender);
                 }
 
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
             } catch (Exception exception) {
-                exception.printStackTrace();
-                System.out.println(exception.getMessage());
+                log.warn("Failed to extract TMDB person {}: {}", actorId, exception.getMessage());
             }
 
             return null;
         }, asyncExecutor);
     }
 
-    public static String getJsonValue(JsonObject jsonObj, String key) {
-        return (jsonObj != null && jsonObj.has(key) && !jsonObj.get(key).isJsonNull())
-                ? jsonObj.get(key).getAsString()
-                : "";
+    // Клиентите и старите редове пращат датите в различни формати – приемаме най-честите
+    public static Optional<Instant> parseTimestamp(String value) {
+        if (value == null || value.isBlank()) return Optional.empty();
+        String trimmed = value.trim();
+
+        if (trimmed.chars().allMatch(Character::isDigit)) {
+            return Optional.of(Instant.ofEpochMilli(Long.parseLong(trimmed)));
+        }
+
+        try {
+            return Optional.of(Instant.parse(trimmed));
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return Optional.of(OffsetDateTime.parse(trimmed).toInstant());
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return Optional.of(LocalDateTime.parse(trimmed.replace(' ', 'T')).toInstant(ZoneOffset.UTC));
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return Optional.of(LocalDate.parse(trimmed).atStartOfDay().toInstant(ZoneOffset.UTC));
+        } catch (DateTimeParseException ignored) {
+        }
+
+        return Optional.empty();
+    }
+
+    public static String normalizeGenre(String genre) {
+        return genre == null ? "" : genre.trim().toLowerCase(Locale.ROOT);
     }
 
-    private static String getExternalId(JsonObject externalIds, String key) {
-        return (externalIds != null && externalIds.has(key) && !externalIds.get(key).isJsonNull())
-                ? externalIds.get(key).getAsString()
-                : "";
+    // Липсващите полета в TMDB отговорите се пазят като празен текст, както досега
+    public static String orEmpty(String value) {
+        return value == null ? "" : value;
     }
 }
\ No newline at end of file
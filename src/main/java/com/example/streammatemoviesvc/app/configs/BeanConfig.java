@@ -1,15 +1,22 @@
 package com.example.streammatemoviesvc.app.configs;
 
+import com.example.streammatemoviesvc.app.commonData.models.enums.ExecutorMode;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.net.http.HttpClient;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Configuration
 public class BeanConfig {
@@ -20,7 +27,16 @@ public class BeanConfig {
     }
 
     @Bean
-    public Executor asyncExecutor() {
+    public Executor asyncExecutor(@Value("${app.async.executor-mode:platform}") ExecutorMode executorMode,
+                                  MeterRegistry meterRegistry) {
+        if (executorMode == ExecutorMode.VIRTUAL) {
+            // Всяка задача получава собствена виртуална нишка, така блокиращото I/O не изчерпва пула
+            return Executors.newThreadPerTaskExecutor(
+                    countingThreadFactory(Thread.ofVirtual().name("AsyncVirtualThread-", 0).factory(), meterRegistry));
+        }
+
+        // ThreadPoolTaskExecutor бийновете се измерват автоматично от Spring Boot (executor.* с name=asyncExecutor)
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(20);  // Минимален брой нишки
         executor.setMaxPoolSize(80);  // Максимален брой нишки
@@ -30,6 +46,24 @@ public class BeanConfig {
         return executor;
     }
 
+    // Виртуалните нишки нямат пул и опашка – броим само задачите, които се изпълняват в момента
+    private static ThreadFactory countingThreadFactory(ThreadFactory delegate, MeterRegistry meterRegistry) {
+        AtomicInteger activeTasks = new AtomicInteger();
+        Gauge.builder("executor.active", activeTasks, AtomicInteger::get)
+                .description("Tasks currently running on the async executor")
+                .tag("name", "asyncExecutor")
+                .register(meterRegistry);
+
+        return runnable -> delegate.newThread(() -> {
+            activeTasks.incrementAndGet();
+            try {
+                runnable.run();
+            } finally {
+                activeTasks.decrementAndGet();
+            }
+        });
+    }
+
     @Bean
     public ObjectMapper objectMapper() {
         return new ObjectMapper()
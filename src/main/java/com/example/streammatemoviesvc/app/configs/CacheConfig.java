@@ -0,0 +1,53 @@
+package com.example.streammatemoviesvc.app.configs;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String MOVIE_DETAILS_CACHE = "movieDetails";
+    public static final String SEARCH_COUNTS_CACHE = "searchCounts";
+    public static final String CATALOG_VERSION_CACHE = "catalogVersion";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${cache.movie-details.max-size:1000}") long movieDetailsMaxSize,
+                                     @Value("${cache.movie-details.ttl:10m}") Duration movieDetailsTtl,
+                                     @Value("${cache.search-counts.max-size:10000}") long searchCountsMaxSize,
+                                     @Value("${cache.search-counts.ttl:5m}") Duration searchCountsTtl,
+                                     @Value("${cache.versions.ttl:30s}") Duration versionsTtl) {
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+
+        // recordStats() е нужен за hit/miss метриките в actuator
+        cacheManager.registerCustomCache(MOVIE_DETAILS_CACHE, Caffeine.newBuilder()
+                .maximumSize(movieDetailsMaxSize)
+                .expireAfterWrite(movieDetailsTtl)
+                .recordStats()
+                .build());
+
+        // Броят резултати за търсене е LIKE сканиране – пазим го по нормализиран термин
+        cacheManager.registerCustomCache(SEARCH_COUNTS_CACHE, Caffeine.newBuilder()
+                .maximumSize(searchCountsMaxSize)
+                .expireAfterWrite(searchCountsTtl)
+                .recordStats()
+                .build());
+
+        // Версията за ETag-а на каталога: кратък TTL, за да се видят и промените от други инстанции
+        cacheManager.registerCustomCache(CATALOG_VERSION_CACHE, Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(versionsTtl)
+                .recordStats()
+                .build());
+
+        return cacheManager;
+    }
+}
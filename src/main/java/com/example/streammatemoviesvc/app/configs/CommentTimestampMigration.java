@@ -0,0 +1,89 @@
+package com.example.streammatemoviesvc.app.configs;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * movies_comments.created_at беше VARCHAR – превръща го в TIMESTAMPTZ с един ALTER в транзакция.
+ * Изпълнява се преди EntityManagerFactory, така че нито Hibernate, нито Tomcat виждат старата колона.
+ */
+@Slf4j
+@Component(CommentTimestampMigration.BEAN_NAME)
+public class CommentTimestampMigration {
+
+    static final String BEAN_NAME = "commentTimestampMigration";
+
+    // Форматите на UtilMethods.parseTimestamp: epoch милисекунди или ISO дата/час (с или без отместване).
+    // Грешката при CAST се хваща тук, иначе един невалиден ред проваля целия ALTER
+    private static final String CREATE_PARSE_FUNCTION = "CREATE OR REPLACE FUNCTION pg_temp.parse_comment_timestamp(value TEXT) " +
+            "RETURNS TIMESTAMPTZ AS $$ " +
+            "BEGIN " +
+            "IF value ~ '^[0-9]+$' THEN RETURN to_timestamp(CAST(value AS BIGINT) / 1000.0); END IF; " +
+            "IF value !~ '^[0-9]{4}-[0-9]{2}-[0-9]{2}' THEN RETURN NULL; END IF; " +
+            "RETURN CAST(value AS TIMESTAMPTZ); " +
+            "EXCEPTION WHEN others THEN RETURN NULL; " +
+            "END $$ LANGUAGE plpgsql";
+
+    private static final String PARSED_CREATED_AT = "pg_temp.parse_comment_timestamp(TRIM(created_at))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public CommentTimestampMigration(JdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        // JPA transaction manager-ът още не съществува – той зависи от EntityManagerFactory
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @PostConstruct
+    void migrate() {
+        List<String> columnTypes = this.jdbcTemplate.queryForList("SELECT data_type FROM information_schema.columns " +
+                "WHERE table_name = 'movies_comments' AND column_name = 'created_at'", String.class);
+        if (columnTypes.isEmpty() || columnTypes.get(0).toLowerCase().startsWith("timestamp")) return;
+
+        log.info("Migrating movies_comments.created_at from {} to timestamp", columnTypes.get(0));
+        this.transactionTemplate.executeWithoutResult(status -> {
+            // Датите без отместване се четат като UTC, както в UtilMethods.parseTimestamp
+            this.jdbcTemplate.execute("SET LOCAL TIME ZONE 'UTC'");
+            this.jdbcTemplate.execute(CREATE_PARSE_FUNCTION);
+
+            // Непознатите формати отиват най-отзад в хронологията, но оставяме следа кои са
+            List<Map<String, Object>> unparseableRows = this.jdbcTemplate.queryForList(
+                    "SELECT id, created_at FROM movies_comments WHERE " + PARSED_CREATED_AT + " IS NULL");
+            for (Map<String, Object> row : unparseableRows) {
+                log.warn("Comment {} has unparseable created_at '{}', migrating it as epoch", row.get("id"), row.get("created_at"));
+            }
+
+            // Индексът (movie_id, created_at, id) се преизгражда от самия ALTER
+            this.jdbcTemplate.execute("ALTER TABLE movies_comments ALTER COLUMN created_at TYPE TIMESTAMP(6) WITH TIME ZONE " +
+                    "USING COALESCE(" + PARSED_CREATED_AT + ", TIMESTAMPTZ 'epoch')");
+            this.jdbcTemplate.execute("ALTER TABLE movies_comments ALTER COLUMN created_at SET NOT NULL");
+            this.jdbcTemplate.execute("DROP FUNCTION pg_temp.parse_comment_timestamp(TEXT)");
+
+            // Остатък от предишната (нетранзакционна) версия на миграцията, ако е била прекъсната
+            this.jdbcTemplate.execute("ALTER TABLE movies_comments DROP COLUMN IF EXISTS created_at_ts");
+
+            log.info("Migrated comment timestamps ({} unparseable)", unparseableRows.size());
+        });
+    }
+
+    // ddl-auto=update и репозиториите тръгват едва след миграцията
+    @Component
+    static class EntityManagerFactoryDependsOnMigration extends EntityManagerFactoryDependsOnPostProcessor {
+
+        EntityManagerFactoryDependsOnMigration() {
+            super(BEAN_NAME);
+        }
+    }
+}
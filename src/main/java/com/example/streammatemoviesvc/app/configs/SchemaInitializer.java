@@ -0,0 +1,158 @@
+package com.example.streammatemoviesvc.app.configs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Създава индексите и прави миграциите, които ddl-auto=update не може да направи сам.
+ * Върви след създаването на схемата, но преди Tomcat да приеме заявки и преди crawler-а (ApplicationReadyEvent),
+ * за да не се състезава с коментари и ingestion. Пълните преизчисления се правят веднъж за базата (runOnce).
+ * Смяната на типа на movies_comments.created_at е в CommentTimestampMigration, защото трябва да мине преди Hibernate.
+ */
+@Slf4j
+@Component
+public class SchemaInitializer implements SmartInitializingSingleton {
+
+    static final String RATING_AGGREGATES_MARKER = "migration:rating-aggregates";
+    static final String CATALOG_COUNTERS_MARKER = "migration:catalog-counters";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public SchemaInitializer(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        createSearchIndexes();
+        backfillMovieGenres();
+        runOnce(RATING_AGGREGATES_MARKER, this::recomputeRatingAggregates);
+        backfillMovieTmdbIds();
+        backfillCastOrder();
+        runOnce(CATALOG_COUNTERS_MARKER, this::recomputeCatalogCounters);
+    }
+
+    // Trigram индексите обслужват LIKE '%x%' търсенето по заглавие и search tag
+    private void createSearchIndexes() {
+        executeQuietly("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+        executeQuietly("CREATE INDEX IF NOT EXISTS idx_movies_title_trgm ON movies USING GIN (LOWER(title) gin_trgm_ops)");
+        executeQuietly("CREATE INDEX IF NOT EXISTS idx_movies_search_tag_trgm ON movies USING GIN (LOWER(search_tag) gin_trgm_ops)");
+    }
+
+    // Разбива старите comma-joined жанрове на редове в movies_genres за филмите, които още нямат такива
+    private void backfillMovieGenres() {
+        int inserted = updateQuietly("INSERT INTO movies_genres (id, movie_id, genre, created_at) " +
+                "SELECT gen_random_uuid(), x.movie_id, x.genre, x.created_at FROM (" +
+                "SELECT DISTINCT m.id AS movie_id, LOWER(TRIM(g.name)) AS genre, m.created_at " +
+                "FROM movies m, unnest(string_to_array(m.genres, ',')) AS g(name) " +
+                "WHERE TRIM(g.name) <> '' " +
+                "AND NOT EXISTS (SELECT 1 FROM movies_genres mg WHERE mg.movie_id = m.id)) x");
+
+        if (inserted > 0) log.info("Backfilled {} movie genre rows", inserted);
+    }
+
+    // Попълва агрегатите на оценките от коментарите отпреди въвеждането им.
+    // Пишат се само редовете, които се разминават, а details_version расте, за да се сменят ETag-овете
+    private void recomputeRatingAggregates() {
+        int updatedMovies = this.jdbcTemplate.update("UPDATE movies m SET ratings_count = s.votes, ratings_sum = s.total, " +
+                "details_version = m.details_version + 1 FROM (" +
+                "SELECT mm.id AS movie_id, COUNT(c.id) AS votes, COALESCE(SUM(c.rating), 0) AS total " +
+                "FROM movies mm LEFT JOIN movies_comments c ON c.movie_id = mm.id GROUP BY mm.id) s " +
+                "WHERE m.id = s.movie_id AND (m.ratings_count <> s.votes OR m.ratings_sum <> s.total)");
+
+        int updatedBuckets = this.jdbcTemplate.update("INSERT INTO movies_rating_histogram (id, movie_id, bucket, votes) " +
+                "SELECT gen_random_uuid(), c.movie_id, c.bucket, COUNT(*) FROM (" +
+                "SELECT movie_id, " + ratingBucket("rating") + " AS bucket FROM movies_comments) c " +
+                "GROUP BY c.movie_id, c.bucket " +
+                "ON CONFLICT (movie_id, bucket) DO UPDATE SET votes = EXCLUDED.votes " +
+                "WHERE movies_rating_histogram.votes <> EXCLUDED.votes");
+
+        updatedBuckets += this.jdbcTemplate.update("UPDATE movies_rating_histogram h SET votes = 0 WHERE h.votes <> 0 " +
+                "AND NOT EXISTS (SELECT 1 FROM movies_comments c WHERE c.movie_id = h.movie_id " +
+                "AND " + ratingBucket("c.rating") + " = h.bucket)");
+
+        if (updatedMovies > 0 || updatedBuckets > 0) {
+            log.info("Recomputed rating aggregates for {} movies ({} histogram buckets)", updatedMovies, updatedBuckets);
+        }
+    }
+
+    // Старите филми нямат tmdb_id – вадим го от video_url (.../embed/movie/{id}); при дубликати печели най-старият
+    private void backfillMovieTmdbIds() {
+        int updated = updateQuietly("UPDATE movies m SET tmdb_id = x.tmdb_id FROM (" +
+                "SELECT DISTINCT ON (s.tmdb_id) s.id, s.tmdb_id FROM (" +
+                "SELECT id, created_at, CAST(substring(video_url FROM '/movie/([0-9]+)') AS BIGINT) AS tmdb_id " +
+                "FROM movies WHERE tmdb_id IS NULL) s " +
+                "WHERE s.tmdb_id IS NOT NULL ORDER BY s.tmdb_id, s.created_at) x " +
+                "WHERE m.id = x.id AND NOT EXISTS (SELECT 1 FROM movies e WHERE e.tmdb_id = x.tmdb_id)");
+
+        if (updated > 0) log.info("Backfilled tmdb_id for {} movies", updated);
+    }
+
+    // Cast-ът отпреди cast_order няма запазен billing ред – подреждаме го както го показвахме дотогава (по име),
+    // за да е списъкът без дупки. Новите редове винаги имат cast_order, затова стъпката пипа само старите
+    private void backfillCastOrder() {
+        int updated = updateQuietly("UPDATE movies_actors ma SET cast_order = o.position FROM (" +
+                "SELECT ma2.movie_id, ma2.actor_id, " +
+                "ROW_NUMBER() OVER (PARTITION BY ma2.movie_id ORDER BY a.name_in_real_life, a.id) - 1 AS position " +
+                "FROM movies_actors ma2 JOIN actors a ON a.id = ma2.actor_id WHERE ma2.cast_order IS NULL) o " +
+                "WHERE ma.movie_id = o.movie_id AND ma.actor_id = o.actor_id AND ma.cast_order IS NULL");
+
+        if (updated > 0) log.info("Backfilled cast order for {} movie cast rows", updated);
+    }
+
+    // Попълва броячите от таблиците за филмите отпреди въвеждането им; след това ги поддържа само saveMovie
+    private void recomputeCatalogCounters() {
+        this.jdbcTemplate.update("INSERT INTO catalog_counters (counter_key, counter_value) " +
+                "SELECT 'movies:total', COUNT(*) FROM movies " +
+                "ON CONFLICT (counter_key) DO UPDATE SET counter_value = EXCLUDED.counter_value");
+
+        int genreCounters = this.jdbcTemplate.update("INSERT INTO catalog_counters (counter_key, counter_value) " +
+                "SELECT CONCAT('genre:', genre), COUNT(*) FROM movies_genres GROUP BY genre " +
+                "ON CONFLICT (counter_key) DO UPDATE SET counter_value = EXCLUDED.counter_value");
+
+        log.info("Recomputed catalog counters ({} genres)", genreCounters);
+    }
+
+    // Стъпката и маркерът ѝ в catalog_counters са в една транзакция: провалена стъпка се повтаря при следващото
+    // стартиране, а втора инстанция, стартирала едновременно, чака commit-а на маркера и я пропуска
+    private void runOnce(String marker, Runnable step) {
+        try {
+            this.transactionTemplate.executeWithoutResult(status -> {
+                int claimed = this.jdbcTemplate.update("INSERT INTO catalog_counters (counter_key, counter_value) " +
+                        "VALUES (?, 1) ON CONFLICT (counter_key) DO NOTHING", marker);
+                if (claimed > 0) step.run();
+            });
+        } catch (Exception exception) {
+            log.warn("Schema step {} failed: {}", marker, exception.getMessage());
+        }
+    }
+
+    // Същото като MovieRatingBucket.bucketOf
+    private static String ratingBucket(String ratingColumn) {
+        return "CAST(LEAST(10, GREATEST(1, FLOOR(" + ratingColumn + "))) AS INT)";
+    }
+
+    private int updateQuietly(String sql) {
+        try {
+            return this.jdbcTemplate.update(sql);
+        } catch (Exception exception) {
+            log.warn("Schema statement failed: {} ({})", sql, exception.getMessage());
+            return 0;
+        }
+    }
+
+    private void executeQuietly(String sql) {
+        try {
+            this.jdbcTemplate.execute(sql);
+        } catch (Exception exception) {
+            log.warn("Schema statement failed: {} ({})", sql, exception.getMessage());
+        }
+    }
+}
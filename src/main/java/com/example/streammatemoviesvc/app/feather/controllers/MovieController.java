@@ -1,16 +1,31 @@
 package com.example.streammatemoviesvc.app.feather.controllers;
 
+import com.example.streammatemoviesvc.app.commonData.models.entities.Actor;
+import com.example.streammatemoviesvc.app.commonData.models.enums.ImageType;
 import com.example.streammatemoviesvc.app.feather.models.dtos.CinemaRecordResponse;
+import com.example.streammatemoviesvc.app.feather.models.dtos.CinemaRecordSearchResponse;
+import com.example.streammatemoviesvc.app.feather.models.dtos.CursorPageResponse;
+import com.example.streammatemoviesvc.app.feather.models.dtos.IngestionJobResponse;
+import com.example.streammatemoviesvc.app.feather.models.dtos.MovieSearchResponse;
+import com.example.streammatemoviesvc.app.feather.models.dtos.PrefillStatusResponse;
 import com.example.streammatemoviesvc.app.feather.models.entities.Movie;
 import com.example.streammatemoviesvc.app.feather.models.entities.MovieComment;
+import com.example.streammatemoviesvc.app.feather.models.entities.MovieImage;
+import com.example.streammatemoviesvc.app.feather.services.CatalogPrefillCrawler;
+import com.example.streammatemoviesvc.app.feather.services.IngestionJobManager;
 import com.example.streammatemoviesvc.app.feather.services.MovieService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -18,11 +33,29 @@ import java.util.UUID;
 @RestController
 public class MovieController {
 
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     private final MovieService movieService;
+    private final IngestionJobManager ingestionJobManager;
+    private final CatalogPrefillCrawler catalogPrefillCrawler;
+
+    // Каталогът може да се пази кратко от клиента; детайлите (с коментарите) се проверяват всеки път с ETag-а
+    private final CacheControl catalogCacheControl;
+    private final CacheControl detailsCacheControl = CacheControl.noCache().cachePublic();
+    private final long catalogRatingsWindowMillis;
 
     @Autowired
-    public MovieController(MovieService movieService) {
+    public MovieController(MovieService movieService,
+                           IngestionJobManager ingestionJobManager,
+                           CatalogPrefillCrawler catalogPrefillCrawler,
+                           @Value("${http.cache.catalog-max-age:30s}") Duration catalogMaxAge,
+                           @Value("${http.cache.catalog-ratings-window:5m}") Duration catalogRatingsWindow) {
+
         this.movieService = movieService;
+        this.ingestionJobManager = ingestionJobManager;
+        this.catalogPrefillCrawler = catalogPrefillCrawler;
+        this.catalogCacheControl = CacheControl.maxAge(catalogMaxAge).cachePublic().mustRevalidate();
+        this.catalogRatingsWindowMillis = catalogRatingsWindow.toMillis();
     }
 
     @DeleteMapping("/delete-movie-comment")
@@ -39,8 +72,16 @@ public class MovieController {
         return this.movieService.getNext10Comments(order, UUID.fromString(currentCinemaRecordId));
     }
 
+    @GetMapping("/get-next-movie-comments-by-cursor")
+    public CursorPageResponse<MovieComment> getCommentsByCursor(@RequestParam String currentCinemaRecordId,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(defaultValue = "10") int size) {
+
+        return this.movieService.getCommentsByCursor(UUID.fromString(currentCinemaRecordId), cursor, size);
+    }
+
     @PostMapping("/post-movie-comment")
-    public void postComment(@RequestParam String authorUsername,
+    public MovieComment postComment(@RequestParam String authorUsername,
                             @RequestParam String authorFullName,
                             @RequestParam String authorImgURL,
                             @RequestParam String commentText,
@@ -49,7 +90,7 @@ public class MovieController {
                             @RequestParam String authorId,
                             @RequestParam String movieId) {
 
-        this.movieService.postComment(authorUsername, authorFullName, authorImgURL, commentText, rating, createdAt, authorId, movieId);
+        return this.movieService.postComment(authorUsername, authorFullName, authorImgURL, commentText, rating, createdAt, authorId, movieId);
     }
 
     @GetMapping("/get-searched-movies-count")
@@ -57,10 +98,29 @@ public class MovieController {
         return this.movieService.getSearchedMoviesCount(title);
     }
 
+    // Тялото остава списък (първите 200 по релевантност), а броят на всички съвпадения идва в X-Total-Count
     @GetMapping("/get-movies-by-title")
-    public List<Movie> getMoviesByTitle(@RequestParam String title) {
-        List<Movie> moviesByTitle = this.movieService.getMoviesByTitle(title);
-        return moviesByTitle;
+    public ResponseEntity<List<Movie>> getMoviesByTitle(@RequestParam String title) {
+        MovieSearchResponse moviesByTitle = this.movieService.getMoviesByTitle(title);
+        return ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, String.valueOf(moviesByTitle.getTotalCount()))
+                .body(moviesByTitle.getMovies());
+    }
+
+    @GetMapping("/search-movies-by-title")
+    public MovieSearchResponse searchMoviesByTitle(@RequestParam String title,
+                                                   @RequestParam(defaultValue = "0") int page,
+                                                   @RequestParam(defaultValue = "20") int size) {
+
+        return this.movieService.searchMoviesByTitle(title, PageRequest.of(page, size));
+    }
+
+    @GetMapping("/get-movie-previews-by-title")
+    public CinemaRecordSearchResponse getMoviePreviewsByTitle(@RequestParam String title,
+                                                              @RequestParam(defaultValue = "0") int page,
+                                                              @RequestParam(defaultValue = "20") int size) {
+
+        return this.movieService.getMoviePreviewsByTitle(title, PageRequest.of(page, size));
     }
 
     @GetMapping("/get-movies-count-by-genre")
@@ -69,42 +129,126 @@ public class MovieController {
     }
 
     @GetMapping("/get-next-twenty-movies-by-genre")
-    public List<CinemaRecordResponse> getNextTwentyMoviesByGenre(@RequestParam(defaultValue = "0") int page,
-                                                                 @RequestParam(defaultValue = "20") int size,
-                                                                 @RequestParam String receivedGenre) {
+    public ResponseEntity<List<CinemaRecordResponse>> getNextTwentyMoviesByGenre(@RequestParam(defaultValue = "0") int page,
+                                                                                 @RequestParam(defaultValue = "20") int size,
+                                                                                 @RequestParam String receivedGenre,
+                                                                                 WebRequest webRequest) {
+
+        // ETag-ът се проверява преди заявката – при непроменен каталог базата не се докосва
+        String eTag = catalogETag();
+        if (webRequest.checkNotModified(eTag)) return notModified(this.catalogCacheControl);
 
         Pageable pageable = PageRequest.of(page, size);  // Стандартен Pageable
-        return movieService.getNextTwentyMoviesByGenre(receivedGenre, pageable);  // Предаваме жанра и Pageable на сървиса
+        List<CinemaRecordResponse> movies = movieService.getNextTwentyMoviesByGenre(receivedGenre, pageable);  // Предаваме жанра и Pageable на сървиса
+        return ResponseEntity.ok().eTag(eTag).cacheControl(this.catalogCacheControl).body(movies);
     }
 
+    @GetMapping("/get-next-movies-by-genre-and-cursor")
+    public CursorPageResponse<CinemaRecordResponse> getMoviesByGenreAndCursor(@RequestParam(required = false) String cursor,
+                                                                              @RequestParam(defaultValue = "20") int size,
+                                                                              @RequestParam String receivedGenre) {
+
+        return movieService.getMoviesByGenreAndCursor(receivedGenre, cursor, size);
+    }
 
     @GetMapping("/get-movie-details")
-    public Movie getConcreteMovieDetails(@RequestParam String id) {
-        Movie movie = this.movieService.getConcreteMovieDetails(UUID.fromString(id));
-        System.out.println();
-        return movie;
+    public ResponseEntity<Movie> getConcreteMovieDetails(@RequestParam String id, WebRequest webRequest) {
+        UUID movieId = UUID.fromString(id);
+
+        // ETag-ът се проверява с една скаларна заявка, преди да се зареди целият филм
+        long version = this.movieService.getMovieDetailsVersion(movieId);
+        String eTag = "movie-" + movieId + "-" + version;
+        if (webRequest.checkNotModified(eTag)) return notModified(this.detailsCacheControl);
+
+        // Кешът е по (id, версия), така че тялото е поне толкова ново, колкото ETag-а
+        Movie movie = this.movieService.getConcreteMovieDetails(movieId, version);
+        return ResponseEntity.ok().eTag(eTag).cacheControl(this.detailsCacheControl).body(movie);
+    }
+
+    @GetMapping("/get-movie-cast")
+    public List<Actor> getMovieCast(@RequestParam String movieId,
+                                    @RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "21") int size) {
+
+        return this.movieService.getMovieCast(UUID.fromString(movieId), page, size);
+    }
+
+    // imageType е BACKDROP или POSTER; без него се връщат и двата вида
+    @GetMapping("/get-movie-images")
+    public List<MovieImage> getMovieImages(@RequestParam String movieId,
+                                           @RequestParam(required = false) ImageType imageType,
+                                           @RequestParam(defaultValue = "0") int page,
+                                           @RequestParam(defaultValue = "20") int size) {
+
+        return this.movieService.getMovieImages(UUID.fromString(movieId), imageType, page, size);
     }
 
     @GetMapping("/get-next-thirty-movies")
-    public List<CinemaRecordResponse> getEveryThirtyMovies(@RequestParam(defaultValue = "0") int page,
-                                                           @RequestParam(defaultValue = "10") int size) {
+    public ResponseEntity<List<CinemaRecordResponse>> getEveryThirtyMovies(@RequestParam(defaultValue = "0") int page,
+                                                                           @RequestParam(defaultValue = "10") int size,
+                                                                           WebRequest webRequest) {
+
+        String eTag = catalogETag();
+        if (webRequest.checkNotModified(eTag)) return notModified(this.catalogCacheControl);
 
         Pageable pageable = PageRequest.of(page, size);
         Page<CinemaRecordResponse> everyThirtyMovies = movieService.getEveryThirtyMovies(pageable);
-        System.out.println("Requested page: " + page + ", size: " + size); // Дебъгване
 
         List<CinemaRecordResponse> movies = new ArrayList<>();
         everyThirtyMovies.get().forEach(movies::add);
-        return movies;
+        return ResponseEntity.ok().eTag(eTag).cacheControl(this.catalogCacheControl).body(movies);
+    }
+
+    @GetMapping("/get-next-movies-by-cursor")
+    public CursorPageResponse<CinemaRecordResponse> getMoviesByCursor(@RequestParam(required = false) String cursor,
+                                                                      @RequestParam(defaultValue = "30") int size) {
+
+        return movieService.getMoviesByCursor(cursor, size);
     }
 
     @PostMapping("/search-movies")
-    public void searchMovies(@RequestBody String title) throws IOException, InterruptedException {
-        this.movieService.searchForMovies(title);
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public IngestionJobResponse searchMovies(@RequestBody String title) {
+        // Повторно търсене на същия термин връща вече работещата задача
+        return this.ingestionJobManager.submit(title).toResponse();
+    }
+
+    @GetMapping("/get-ingestion-job-status")
+    public IngestionJobResponse getIngestionJobStatus(@RequestParam String jobId) {
+        return this.ingestionJobManager.getJob(UUID.fromString(jobId)).toResponse();
+    }
+
+    @PostMapping("/start-catalog-prefill")
+    public PrefillStatusResponse startCatalogPrefill() {
+        this.catalogPrefillCrawler.start();
+        return this.catalogPrefillCrawler.getStatus();
+    }
+
+    @PostMapping("/stop-catalog-prefill")
+    public PrefillStatusResponse stopCatalogPrefill() {
+        this.catalogPrefillCrawler.stop();
+        return this.catalogPrefillCrawler.getStatus();
+    }
+
+    @GetMapping("/get-catalog-prefill-status")
+    public PrefillStatusResponse getCatalogPrefillStatus() {
+        return this.catalogPrefillCrawler.getStatus();
     }
 
     @GetMapping("/get-all-movies-count")
     public long getAllMoviesCount() {
         return this.movieService.getAllMoviesCount();
     }
+
+    // Всички страници на каталога зависят от една версия, която расте само при нов филм. Оценките по картичките
+    // не пипат общ ред при всеки коментар – вместо това ETag-ът се сменя на всеки catalog-ratings-window
+    private String catalogETag() {
+        long ratingsWindow = System.currentTimeMillis() / this.catalogRatingsWindowMillis;
+        return "catalog-" + this.movieService.getCatalogVersion() + "-" + ratingsWindow;
+    }
+
+    // checkNotModified вече е сложил 304 и ETag-а; добавяме и Cache-Control, за да се поднови кеширането при клиента
+    private static <T> ResponseEntity<T> notModified(CacheControl cacheControl) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+    }
 }
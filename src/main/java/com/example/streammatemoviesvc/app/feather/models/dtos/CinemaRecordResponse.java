@@ -16,4 +16,6 @@ public class CinemaRecordResponse {
     private String title;
     private String posterImgURL;
     private String releaseDate;
+    private double averageRating;
+    private long ratingsCount;
 }
@@ -0,0 +1,19 @@
+package com.example.streammatemoviesvc.app.feather.models.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CinemaRecordSearchResponse {
+    private long totalCount;
+    @Builder.Default
+    private List<CinemaRecordResponse> results = new ArrayList<>();
+}
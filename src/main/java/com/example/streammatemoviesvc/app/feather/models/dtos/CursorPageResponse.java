@@ -0,0 +1,19 @@
+package com.example.streammatemoviesvc.app.feather.models.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageResponse<T> {
+    @Builder.Default
+    private List<T> items = new ArrayList<>();
+    private String nextCursor;  // null, когато няма следваща страница
+}
@@ -0,0 +1,32 @@
+package com.example.streammatemoviesvc.app.feather.models.dtos;
+
+import com.example.streammatemoviesvc.app.commonData.models.enums.IngestionJobStatus;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestionJobResponse {
+    private UUID id;
+    private String term;
+    private IngestionJobStatus status;
+    private int totalResults;      // резултатите от TMDB търсенето
+    private int processedResults;  // обработени до момента (записани, пропуснати или неуспешни)
+    private int savedMovies;
+    private int failedResults;
+    private String error;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Instant createdAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Instant finishedAt;
+}
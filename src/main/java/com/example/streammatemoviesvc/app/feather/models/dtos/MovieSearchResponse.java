@@ -0,0 +1,20 @@
+package com.example.streammatemoviesvc.app.feather.models.dtos;
+
+import com.example.streammatemoviesvc.app.feather.models.entities.Movie;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieSearchResponse {
+    private long totalCount;
+    @Builder.Default
+    private List<Movie> movies = new ArrayList<>();
+}
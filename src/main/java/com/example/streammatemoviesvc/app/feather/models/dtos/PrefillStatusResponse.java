@@ -0,0 +1,28 @@
+package com.example.streammatemoviesvc.app.feather.models.dtos;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PrefillStatusResponse {
+    private boolean running;
+    private String currentSource;
+    private int currentPage;
+    private long pagesCrawled;
+    private long resultsProcessed;
+    private long moviesSaved;
+    private long failures;
+    private double moviesSavedPerMinute;
+    private double resultsPerMinute;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Instant startedAt;
+}
@@ -0,0 +1,38 @@
+package com.example.streammatemoviesvc.app.feather.models.entities;
+
+import com.example.streammatemoviesvc.app.commonData.utils.UtilMethods;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * Точен брояч за пагинацията (общ брой филми и брой по жанр).
+ * Увеличава се при всеки записан филм, вместо да се прави COUNT(*) при всяка страница.
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@Table(name = "catalog_counters")
+@Entity
+public class CatalogCounter {
+
+    public static final String TOTAL_MOVIES_KEY = "movies:total";
+    // Не е брояч на редове, а версия на каталога за ETag-овете – расте само при нов филм, не при коментар
+    public static final String CATALOG_VERSION_KEY = "catalog:version";
+    private static final String GENRE_KEY_PREFIX = "genre:";
+
+    @Id
+    @Column(name = "counter_key")
+    private String key;
+
+    @Column(name = "counter_value", nullable = false)
+    private long value;
+
+    public static String genreKey(String genre) {
+        return GENRE_KEY_PREFIX + UtilMethods.normalizeGenre(genre);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.streammatemoviesvc.app.feather.models.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.time.Instant;
+
+/**
+ * Докъде е стигнал CatalogPrefillCrawler за даден TMDB източник (popular, top_rated, discover:2015 ...).
+ * Записва се след всяка обработена страница, така че рестартът продължава от следващата.
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+@Table(name = "crawl_checkpoints")
+@Entity
+public class CrawlCheckpoint {
+
+    @Id
+    @Column(name = "source_key")
+    private String sourceKey;
+
+    @Column(name = "last_page", nullable = false)
+    private int lastPage;
+
+    @Column(name = "total_pages", nullable = false)
+    private int totalPages;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
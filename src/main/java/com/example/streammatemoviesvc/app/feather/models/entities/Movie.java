@@ -2,18 +2,24 @@ package com.example.streammatemoviesvc.app.feather.models.entities;
 
 import com.example.streammatemoviesvc.app.commonData.models.CinemaRecord;
 import com.example.streammatemoviesvc.app.commonData.models.entities.Actor;
+import com.example.streammatemoviesvc.app.commonData.utils.UtilMethods;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "movies")
+@Table(name = "movies", indexes = {
+        @Index(name = "idx_movies_created_at_id", columnList = "created_at, id")
+})
 @Getter
 @Setter
 @Accessors(chain = true)
@@ -23,28 +29,75 @@ public class Movie extends CinemaRecord {
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
+    // Lazy: детайлите го зареждат изрично, а @BatchSize събира зарежданията за няколко филма в една заявка.
+    // cast_order пази реда от TMDB credits (billing), за да не излизат второстепенните роли преди главните
     @JsonManagedReference
-    @ManyToMany(fetch = FetchType.EAGER, cascade = CascadeType.PERSIST)
+    @ManyToMany(fetch = FetchType.LAZY, cascade = CascadeType.PERSIST)
+    @BatchSize(size = 50)
     @JoinTable(
             name = "movies_actors",
             joinColumns = @JoinColumn(name = "movie_id"),
             inverseJoinColumns = @JoinColumn(name = "actor_id")
     )
+    @OrderColumn(name = "cast_order")
     private List<Actor> castList = new ArrayList<>();
 
+    // Уникален – по него ingestion-ът проверява наведнъж кои резултати вече имаме
+    @Column(name = "tmdb_id", unique = true)
+    private Long tmdbId;
+
     @Column(name = "video_url", nullable = false)
     private String videoURL;
 
-    @OneToMany(fetch = FetchType.EAGER, mappedBy = "movie", cascade = CascadeType.ALL, orphanRemoval = true)
+    // Агрегатите се поддържат от postComment и deleteMovieComment, за да не се сканират коментарите
+    @Column(name = "ratings_count", nullable = false)
+    @ColumnDefault("0")
+    private long ratingsCount;
+
+    @Column(name = "ratings_sum", nullable = false)
+    @ColumnDefault("0")
+    private double ratingsSum;
+
+    // Расте при всяка промяна на коментарите – по него се смята ETag-ът на /get-movie-details
+    @JsonIgnore
+    @Column(name = "details_version", nullable = false)
+    @ColumnDefault("0")
+    private long detailsVersion;
+
+    @OneToMany(mappedBy = "movie", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("bucket")
+    @BatchSize(size = 50)
+    @JsonManagedReference
+    private List<MovieRatingBucket> ratingHistogram = new ArrayList<>();
+
+    @OneToMany(fetch = FetchType.LAZY, mappedBy = "movie", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 50)
     @JsonManagedReference
     private List<MovieImage> imagesList = new ArrayList<>();
 
     @OneToMany(mappedBy = "movie", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 50)
     @JsonManagedReference
     private List<MovieComment> movieComments = new ArrayList<>();
 
+    @OneToMany(mappedBy = "movie", cascade = CascadeType.ALL, orphanRemoval = true)
+    @JsonIgnore  // за клиентите остава полето genres
+    private List<MovieGenre> genresList = new ArrayList<>();
+
+    public double getAverageRating() {
+        return this.ratingsCount == 0 ? 0 : this.ratingsSum / this.ratingsCount;
+    }
+
     public void addAllImages(List<MovieImage> allImages) {
         allImages.forEach(image -> image.setMovie(this));
         this.getImagesList().addAll(allImages);
     }
+
+    public void addAllGenres(List<String> genreNames) {
+        genreNames.stream()
+                .map(UtilMethods::normalizeGenre)
+                .filter(genre -> !genre.isEmpty())
+                .distinct()
+                .forEach(genre -> this.getGenresList().add(new MovieGenre().setGenre(genre).setMovie(this)));
+    }
 }
\ No newline at end of file
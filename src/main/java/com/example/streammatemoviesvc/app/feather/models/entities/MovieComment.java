@@ -1,6 +1,7 @@
 package com.example.streammatemoviesvc.app.feather.models.entities;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonFormat;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,10 +10,13 @@ import lombok.experimental.Accessors;
 
 // Новото
 import jakarta.validation.constraints.Min;
+import java.time.Instant;
 import java.util.UUID;
 
 @Entity
-@Table(name = "movies_comments")
+@Table(name = "movies_comments", indexes = {
+        @Index(name = "idx_movies_comments_movie_created_at_id", columnList = "movie_id, created_at, id")
+})
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -43,7 +47,8 @@ public class MovieComment {
     private double rating;
 
     @Column(nullable = false, name = "created_at")
-    private String createdAt;
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Instant createdAt;
 
     @ManyToOne
     @JoinColumn(name = "movie_id", nullable = false)
@@ -0,0 +1,46 @@
+package com.example.streammatemoviesvc.app.feather.models.entities;
+
+import com.fasterxml.jackson.annotation.JsonBackReference;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Getter
+@Setter
+@Accessors(chain = true)
+@Table(name = "movies_genres",
+        indexes = {
+                @Index(name = "idx_movies_genres_genre_created_at", columnList = "genre, created_at, movie_id")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_movies_genres_movie_genre", columnNames = {"movie_id", "genre"})
+        })
+@Entity
+public class MovieGenre {
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    // Нормализирано име (trim + lower case), за да се търси с равенство, а не с LIKE
+    @Column(nullable = false)
+    private String genre;
+
+    // Копие на created_at на филма, за да се сортира директно по индекса
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @JsonBackReference
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "movie_id", nullable = false)
+    private Movie movie;
+
+    @PrePersist
+    void copyMovieCreatedAt() {
+        if (this.createdAt == null) this.createdAt = this.movie.getCreatedAt();
+    }
+}
@@ -13,7 +13,9 @@ import java.util.UUID;
 @Getter
 @Setter
 @Accessors(chain = true)
-@Table(name = "movies_images")
+@Table(name = "movies_images", indexes = {
+        @Index(name = "idx_movies_images_movie_type", columnList = "movie_id, image_type")
+})
 @Entity
 public class MovieImage {
 
@@ -30,7 +32,7 @@ public class MovieImage {
     private String imageURL;
 
     @JsonBackReference
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "movie_id", nullable = false)
     private Movie movie;  // Или Series, в зависимост от контекста
 }
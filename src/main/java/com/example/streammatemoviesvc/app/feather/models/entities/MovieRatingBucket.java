@@ -0,0 +1,43 @@
+package com.example.streammatemoviesvc.app.feather.models.entities;
+
+import com.fasterxml.jackson.annotation.JsonBackReference;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.util.UUID;
+
+@Getter
+@Setter
+@Accessors(chain = true)
+@Table(name = "movies_rating_histogram",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_movies_rating_histogram_movie_bucket", columnNames = {"movie_id", "bucket"})
+        })
+@Entity
+public class MovieRatingBucket {
+
+    public static final int MIN_BUCKET = 1;
+    public static final int MAX_BUCKET = 10;
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @Column(nullable = false)
+    private int bucket;
+
+    @Column(nullable = false)
+    private long votes;
+
+    @JsonBackReference
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "movie_id", nullable = false)
+    private Movie movie;
+
+    // Оценка 7.5 попада в кошница 7
+    public static int bucketOf(double rating) {
+        return (int) Math.max(MIN_BUCKET, Math.min(MAX_BUCKET, Math.floor(rating)));
+    }
+}
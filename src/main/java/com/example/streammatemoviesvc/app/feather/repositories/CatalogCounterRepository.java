@@ -0,0 +1,23 @@
+package com.example.streammatemoviesvc.app.feather.repositories;
+
+import com.example.streammatemoviesvc.app.feather.models.entities.CatalogCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface CatalogCounterRepository extends JpaRepository<CatalogCounter, String> {
+
+    @Query(value = "SELECT counter_value FROM catalog_counters WHERE counter_key = :key", nativeQuery = true)
+    Optional<Long> findValueByKey(@Param("key") String key);
+
+    @Modifying
+    @Query(value = "INSERT INTO catalog_counters (counter_key, counter_value) VALUES (:key, :delta) " +
+            "ON CONFLICT (counter_key) DO UPDATE SET counter_value = catalog_counters.counter_value + EXCLUDED.counter_value",
+            nativeQuery = true)
+    int increment(@Param("key") String key, @Param("delta") long delta);
+}
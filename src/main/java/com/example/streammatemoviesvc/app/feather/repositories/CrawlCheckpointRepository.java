@@ -0,0 +1,9 @@
+package com.example.streammatemoviesvc.app.feather.repositories;
+
+import com.example.streammatemoviesvc.app.feather.models.entities.CrawlCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CrawlCheckpointRepository extends JpaRepository<CrawlCheckpoint, String> {
+}
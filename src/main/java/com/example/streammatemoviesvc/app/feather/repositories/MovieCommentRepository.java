@@ -2,10 +2,35 @@ package com.example.streammatemoviesvc.app.feather.repositories;
 
 import com.example.streammatemoviesvc.app.feather.models.entities.MovieComment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface MovieCommentRepository extends JpaRepository<MovieComment, UUID> {
+
+    String COMMENT_COLUMNS = "SELECT id, comment_text, author_username, author_full_name, author_img_url, " +
+            "author_id, rating, created_at FROM movies_comments ";
+
+    // И двете заявки минават по индекса (movie_id, created_at, id)
+    @Query(value = COMMENT_COLUMNS +
+            "WHERE movie_id = :movieId ORDER BY created_at DESC, id DESC LIMIT :size", nativeQuery = true)
+    List<Object[]> getFirstComments(@Param("movieId") UUID movieId, @Param("size") int size);
+
+    @Query(value = COMMENT_COLUMNS +
+            "WHERE movie_id = :movieId AND (created_at, id) < (:createdAt, :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :size", nativeQuery = true)
+    List<Object[]> getCommentsAfterCursor(@Param("movieId") UUID movieId,
+                                          @Param("createdAt") Instant createdAt,
+                                          @Param("id") UUID id,
+                                          @Param("size") int size);
+
+    // Един statement: изтрива коментара и връща оценката му за агрегатите, без отделен SELECT
+    @Query(value = "DELETE FROM movies_comments WHERE id = :commentId AND movie_id = :movieId RETURNING rating", nativeQuery = true)
+    Optional<Double> deleteReturningRating(@Param("commentId") UUID commentId, @Param("movieId") UUID movieId);
 }
@@ -0,0 +1,23 @@
+package com.example.streammatemoviesvc.app.feather.repositories;
+
+import com.example.streammatemoviesvc.app.commonData.models.enums.ImageType;
+import com.example.streammatemoviesvc.app.feather.models.entities.MovieImage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface MovieImageRepository extends JpaRepository<MovieImage, UUID> {
+
+    // imageType == null връща всички снимки на филма
+    @Query("SELECT i FROM MovieImage i WHERE i.movie.id = :movieId " +
+            "AND (:imageType IS NULL OR i.imageType = :imageType) ORDER BY i.imageType, i.id")
+    List<MovieImage> findByMovieId(@Param("movieId") UUID movieId,
+                                   @Param("imageType") ImageType imageType,
+                                   Pageable pageable);
+}
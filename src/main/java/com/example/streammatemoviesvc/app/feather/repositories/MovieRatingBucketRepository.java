@@ -0,0 +1,21 @@
+package com.example.streammatemoviesvc.app.feather.repositories;
+
+import com.example.streammatemoviesvc.app.feather.models.entities.MovieRatingBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface MovieRatingBucketRepository extends JpaRepository<MovieRatingBucket, UUID> {
+
+    @Modifying
+    @Query(value = "INSERT INTO movies_rating_histogram (id, movie_id, bucket, votes) " +
+            "VALUES (gen_random_uuid(), :movieId, :bucket, :delta) " +
+            "ON CONFLICT (movie_id, bucket) DO UPDATE SET votes = movies_rating_histogram.votes + EXCLUDED.votes",
+            nativeQuery = true)
+    int addVotes(@Param("movieId") UUID movieId, @Param("bucket") int bucket, @Param("delta") long delta);
+}
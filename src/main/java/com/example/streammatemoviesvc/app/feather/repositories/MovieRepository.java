@@ -2,42 +2,107 @@ package com.example.streammatemoviesvc.app.feather.repositories;
 
 import com.example.streammatemoviesvc.app.feather.models.entities.Movie;
 import com.example.streammatemoviesvc.app.feather.models.entities.MovieComment;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface MovieRepository extends JpaRepository<Movie, UUID> {
-    Optional<Movie> findByTitleAndPosterImgURL(String cinemaRecTitle, String cinemaRecPosterImage);
+    boolean existsByTmdbId(Long tmdbId);
 
-    @Query(value = "SELECT count(*) FROM movies WHERE LOWER(title) LIKE LOWER(CONCAT('%', :movieName, '%'))" +
-            " OR LOWER(search_tag) LIKE LOWER(CONCAT('%', :movieName, '%'))", nativeQuery = true)
+    @Query("SELECT m.tmdbId FROM Movie m WHERE m.tmdbId IN :tmdbIds")
+    List<Long> findExistingTmdbIds(@Param("tmdbIds") Collection<Long> tmdbIds);
+
+    @Query(value = "SELECT count(*) FROM movies WHERE LOWER(title) LIKE CONCAT('%', LOWER(:movieName), '%')" +
+            " OR LOWER(search_tag) LIKE CONCAT('%', LOWER(:movieName), '%')", nativeQuery = true)
     long findMoviesCountByTitleOrSearchTagContainingIgnoreCase(@Param("movieName") String movieName);
 
-    @Query(value = "SELECT * FROM movies WHERE LOWER(title) LIKE LOWER(CONCAT('%', :movieName, '%'))" +
-            " OR LOWER(search_tag) LIKE LOWER(CONCAT('%', :movieName, '%'))", nativeQuery = true)
-    List<Movie> findByTitleOrSearchTagContainingIgnoreCase(@Param("movieName") String movieName);
+    String TITLE_SEARCH_FILTER = "WHERE LOWER(title) LIKE CONCAT('%', LOWER(:movieName), '%') " +
+            "OR LOWER(search_tag) LIKE CONCAT('%', LOWER(:movieName), '%') ";
+
+    // Подрежда по релевантност: точно съвпадение, после префикс, после trigram similarity.
+    String TITLE_SEARCH_ORDER = "ORDER BY CASE WHEN LOWER(title) = LOWER(:movieName) THEN 0 " +
+            "WHEN LOWER(title) LIKE CONCAT(LOWER(:movieName), '%') THEN 1 ELSE 2 END, " +
+            "GREATEST(similarity(LOWER(title), LOWER(:movieName)), similarity(LOWER(search_tag), LOWER(:movieName))) DESC, " +
+            "created_at DESC, id ";
+
+    // total_count е броят на всички съвпадения, изчислен в същата заявка.
+    @Query(value = "SELECT id, COUNT(*) OVER() AS total_count FROM movies " +
+            TITLE_SEARCH_FILTER + TITLE_SEARCH_ORDER +
+            "LIMIT :size OFFSET :offset", nativeQuery = true)
+    List<Object[]> searchRankedMovieIds(@Param("movieName") String movieName,
+                                        @Param("size") int size,
+                                        @Param("offset") int offset);
 
-    @Query(value = "SELECT id, title, poster_img_url, release_date FROM movies ORDER BY created_at DESC LIMIT :size OFFSET :offset", nativeQuery = true)
+    @Query(value = "SELECT id, title, poster_img_url, release_date, ratings_count, ratings_sum, COUNT(*) OVER() AS total_count FROM movies " +
+            TITLE_SEARCH_FILTER + TITLE_SEARCH_ORDER +
+            "LIMIT :size OFFSET :offset", nativeQuery = true)
+    List<Object[]> searchRankedMoviesRawData(@Param("movieName") String movieName,
+                                             @Param("size") int size,
+                                             @Param("offset") int offset);
+
+    @Query(value = "SELECT id, title, poster_img_url, release_date, ratings_count, ratings_sum FROM movies ORDER BY created_at DESC LIMIT :size OFFSET :offset", nativeQuery = true)
     List<Object[]> getThirthyMoviesRawData(@Param("size") int size, @Param("offset") int offset);
 
-    @Query(value = "SELECT id, title, poster_img_url, release_date FROM movies WHERE LOWER(genres) LIKE LOWER(CONCAT('%', :genre, '%')) ORDER BY created_at DESC LIMIT :size OFFSET :offset", nativeQuery = true)
+    @Query(value = "SELECT id, title, poster_img_url, release_date, ratings_count, ratings_sum, created_at FROM movies ORDER BY created_at DESC, id DESC LIMIT :size", nativeQuery = true)
+    List<Object[]> getFirstMoviesRawData(@Param("size") int size);
+
+    @Query(value = "SELECT id, title, poster_img_url, release_date, ratings_count, ratings_sum, created_at FROM movies " +
+            "WHERE (created_at, id) < (:createdAt, :id) ORDER BY created_at DESC, id DESC LIMIT :size", nativeQuery = true)
+    List<Object[]> getMoviesRawDataAfterCursor(@Param("createdAt") Instant createdAt,
+                                               @Param("id") UUID id,
+                                               @Param("size") int size);
+
+    // Жанровете се филтрират през movies_genres по индекса (genre, created_at, movie_id)
+    @Query(value = "SELECT m.id, m.title, m.poster_img_url, m.release_date, m.ratings_count, m.ratings_sum FROM movies_genres g " +
+            "JOIN movies m ON m.id = g.movie_id WHERE g.genre = LOWER(TRIM(:genre)) " +
+            "ORDER BY g.created_at DESC LIMIT :size OFFSET :offset", nativeQuery = true)
     List<Object[]> findByGenreNextTwentyMovies(@Param("genre") String genre, @Param("size") int size, @Param("offset") int offset);
 
-    @Query(value = "SELECT COUNT(*) FROM movies WHERE LOWER(genres) LIKE LOWER(CONCAT('%', :genre, '%'))", nativeQuery = true)
-    long findMoviesCountByGenre(@Param("genre") String genre);
+    @Query(value = "SELECT m.id, m.title, m.poster_img_url, m.release_date, m.ratings_count, m.ratings_sum, g.created_at FROM movies_genres g " +
+            "JOIN movies m ON m.id = g.movie_id WHERE g.genre = LOWER(TRIM(:genre)) " +
+            "ORDER BY g.created_at DESC, g.movie_id DESC LIMIT :size", nativeQuery = true)
+    List<Object[]> findByGenreFirstMovies(@Param("genre") String genre, @Param("size") int size);
+
+    @Query(value = "SELECT m.id, m.title, m.poster_img_url, m.release_date, m.ratings_count, m.ratings_sum, g.created_at FROM movies_genres g " +
+            "JOIN movies m ON m.id = g.movie_id WHERE g.genre = LOWER(TRIM(:genre)) " +
+            "AND (g.created_at, g.movie_id) < (:createdAt, :id) " +
+            "ORDER BY g.created_at DESC, g.movie_id DESC LIMIT :size", nativeQuery = true)
+    List<Object[]> findByGenreMoviesAfterCursor(@Param("genre") String genre,
+                                                @Param("createdAt") Instant createdAt,
+                                                @Param("id") UUID id,
+                                                @Param("size") int size);
+
+    @Modifying
+    @Query(value = "UPDATE movies SET ratings_count = ratings_count + :countDelta, ratings_sum = ratings_sum + :sumDelta, " +
+            "details_version = details_version + 1 WHERE id = :movieId", nativeQuery = true)
+    int updateRatingStats(@Param("movieId") UUID movieId,
+                          @Param("countDelta") long countDelta,
+                          @Param("sumDelta") double sumDelta);
+
+    // Само версията по PK – по нея /get-movie-details отговаря с 304, без да зарежда целия филм
+    @Query("SELECT m.detailsVersion FROM Movie m WHERE m.id = :id")
+    Optional<Long> findDetailsVersionById(@Param("id") UUID id);
+
+    // Cast-ът идва с JOIN; снимките се дозареждат отделно – два bag-а в един JOIN дават декартово произведение
+    @EntityGraph(attributePaths = "castList")
+    Optional<Movie> findWithCastById(UUID id);
 
     @Query(value =
             "SELECT id, comment_text, author_username, author_full_name, author_img_url, " +
                     "author_id, rating, created_at " +
                     "FROM movies_comments " +
                     "WHERE movie_id = :currentCinemaRecordId " +
-                    "ORDER BY created_at DESC " +
+                    "ORDER BY created_at DESC, id DESC " +
                     "LIMIT 10 OFFSET :offset",
             nativeQuery = true)
     List<Object[]> getNext10Comments(@Param("offset") int offset,
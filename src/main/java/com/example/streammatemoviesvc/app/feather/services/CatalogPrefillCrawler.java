@@ -0,0 +1,276 @@
+package com.example.streammatemoviesvc.app.feather.services;
+
+import com.example.streammatemoviesvc.app.commonData.clients.TmdbClient;
+import com.example.streammatemoviesvc.app.commonData.models.enums.IngestionSkipReason;
+import com.example.streammatemoviesvc.app.commonData.models.tmdb.TmdbMovieResult;
+import com.example.streammatemoviesvc.app.commonData.models.tmdb.TmdbSearchResponse;
+import com.example.streammatemoviesvc.app.commonData.services.IngestionMetrics;
+import com.example.streammatemoviesvc.app.commonData.utils.UtilMethods;
+import com.example.streammatemoviesvc.app.feather.models.dtos.PrefillStatusResponse;
+import com.example.streammatemoviesvc.app.feather.models.entities.CrawlCheckpoint;
+import com.example.streammatemoviesvc.app.feather.repositories.CrawlCheckpointRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоново пълни каталога от TMDB listing endpoint-ите (popular, top_rated, now_playing, discover по година),
+ * за да не чакат потребителите живото зареждане при първо търсене.
+ * Резултатите минават през същите филтри и запис като търсенето (MovieService.ingestMovie),
+ * а след всяка страница се записва checkpoint, така че рестартът продължава оттам.
+ */
+@Slf4j
+@Service
+public class CatalogPrefillCrawler {
+
+    // TMDB не връща страници след 500-тната
+    private static final int TMDB_MAX_PAGE = 500;
+
+    private final String TMDB_API_KEY = System.getenv("TMDB_API_KEY");
+
+    // Може да се насочи към локален stub (виж loadTest)
+    @Value("${tmdb.base-url:https://api.themoviedb.org}")
+    private String TMDB_BASE_URL;
+
+    private final TmdbClient tmdbClient;
+    private final MovieService movieService;
+    private final CrawlCheckpointRepository checkpointRepository;
+    private final IngestionMetrics ingestionMetrics;
+
+    private final boolean runOnStartup;
+    private final int concurrency;
+    private final int maxPagesPerSource;
+    private final int discoverFromYear;
+    private final Duration recrawlAfter;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean stopRequested = new AtomicBoolean();
+    private volatile Thread crawlerThread;
+
+    // Статистика за текущото пускане
+    private volatile Instant startedAt;
+    private volatile String currentSource;
+    private volatile int currentPage;
+    private final AtomicLong pagesCrawled = new AtomicLong();
+    private final AtomicLong resultsProcessed = new AtomicLong();
+    private final AtomicLong moviesSaved = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    @Autowired
+    public CatalogPrefillCrawler(TmdbClient tmdbClient,
+                                 MovieService movieService,
+                                 CrawlCheckpointRepository checkpointRepository,
+                                 IngestionMetrics ingestionMetrics,
+                                 @Value("${prefill.run-on-startup:false}") boolean runOnStartup,
+                                 @Value("${prefill.concurrency:4}") int concurrency,
+                                 @Value("${prefill.max-pages-per-source:50}") int maxPagesPerSource,
+                                 @Value("${prefill.discover.from-year:2000}") int discoverFromYear,
+                                 @Value("${prefill.recrawl-after:7d}") Duration recrawlAfter) {
+
+        this.tmdbClient = tmdbClient;
+        this.movieService = movieService;
+        this.checkpointRepository = checkpointRepository;
+        this.ingestionMetrics = ingestionMetrics;
+        this.runOnStartup = runOnStartup;
+        this.concurrency = Math.max(1, concurrency);
+        this.maxPagesPerSource = Math.min(TMDB_MAX_PAGE, maxPagesPerSource);
+        this.discoverFromYear = discoverFromYear;
+        this.recrawlAfter = recrawlAfter;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnApplicationReady() {
+        if (this.runOnStartup) start();
+    }
+
+    /**
+     * Пуска crawler-а във фонова нишка. Връща false, ако вече работи.
+     */
+    public boolean start() {
+        if (!this.running.compareAndSet(false, true)) return false;
+
+        this.stopRequested.set(false);
+        this.startedAt = Instant.now();
+        this.pagesCrawled.set(0);
+        this.resultsProcessed.set(0);
+        this.moviesSaved.set(0);
+        this.failures.set(0);
+
+        this.crawlerThread = new Thread(this::crawlAllSources, "CatalogPrefill");
+        this.crawlerThread.setDaemon(true);
+        this.crawlerThread.start();
+        return true;
+    }
+
+    // Спира след текущата страница – checkpoint-ът й вече е записан или ще се запише
+    public void stop() {
+        this.stopRequested.set(true);
+    }
+
+    public PrefillStatusResponse getStatus() {
+        double elapsedMinutes = this.startedAt == null
+                ? 0
+                : Math.max(1, Duration.between(this.startedAt, Instant.now()).toSeconds()) / 60.0;
+
+        return PrefillStatusResponse.builder()
+                .running(this.running.get())
+                .currentSource(this.currentSource)
+                .currentPage(this.currentPage)
+                .pagesCrawled(this.pagesCrawled.get())
+                .resultsProcessed(this.resultsProcessed.get())
+                .moviesSaved(this.moviesSaved.get())
+                .failures(this.failures.get())
+                .moviesSavedPerMinute(elapsedMinutes == 0 ? 0 : this.moviesSaved.get() / elapsedMinutes)
+                .resultsPerMinute(elapsedMinutes == 0 ? 0 : this.resultsProcessed.get() / elapsedMinutes)
+                .startedAt(this.startedAt)
+                .build();
+    }
+
+    private void crawlAllSources() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService movieWorkers = Executors.newFixedThreadPool(this.concurrency,
+                runnable -> new Thread(runnable, "CatalogPrefillWorker-" + threadCounter.incrementAndGet()));
+
+        try {
+            for (String sourceKey : sourceKeys()) {
+                if (this.stopRequested.get()) break;
+                crawlSource(sourceKey, movieWorkers);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (Exception exception) {
+            log.warn("Catalog prefill stopped: {}", exception.getMessage());
+        } finally {
+            movieWorkers.shutdownNow();
+            this.currentSource = null;
+            this.running.set(false);
+
+            PrefillStatusResponse status = getStatus();
+            log.info("Catalog prefill finished: {} pages, {} results, {} movies saved, {} failures ({} movies/min)",
+                    status.getPagesCrawled(), status.getResultsProcessed(), status.getMoviesSaved(),
+                    status.getFailures(), String.format(Locale.ROOT, "%.1f", status.getMoviesSavedPerMinute()));
+        }
+    }
+
+    private void crawlSource(String sourceKey, ExecutorService movieWorkers) throws Exception {
+        CrawlCheckpoint checkpoint = this.checkpointRepository.findById(sourceKey)
+                .orElseGet(() -> new CrawlCheckpoint().setSourceKey(sourceKey));
+
+        if (checkpoint.isCompleted()) {
+            // Листингите се променят – след recrawlAfter минаваме източника отначало
+            if (checkpoint.getUpdatedAt().plus(this.recrawlAfter).isAfter(Instant.now())) return;
+            checkpoint.setCompleted(false).setLastPage(0);
+        }
+
+        this.currentSource = sourceKey;
+        int page = checkpoint.getLastPage() + 1;
+
+        while (!this.stopRequested.get()) {
+            this.currentPage = page;
+            TmdbSearchResponse listing = this.tmdbClient.get(listingUrl(sourceKey, page), TmdbSearchResponse.class);
+            if (listing == null) {
+                // TMDB не отговори след всички опити – checkpoint-ът остава на последната успешна страница
+                log.warn("Catalog prefill could not load {} page {}", sourceKey, page);
+                return;
+            }
+
+            crawlPage(listing.results(), movieWorkers);
+
+            int lastPage = Math.min(this.maxPagesPerSource, listing.totalPages());
+            checkpoint.setLastPage(page).setTotalPages(listing.totalPages())
+                    .setCompleted(page >= lastPage).setUpdatedAt(Instant.now());
+            this.checkpointRepository.save(checkpoint);
+            this.pagesCrawled.incrementAndGet();
+
+            log.info("Catalog prefill {} page {}/{} done ({} movies saved so far, {} movies/min)",
+                    sourceKey, page, lastPage, this.moviesSaved.get(),
+                    String.format(Locale.ROOT, "%.1f", getStatus().getMoviesSavedPerMinute()));
+
+            if (checkpoint.isCompleted()) return;
+            page++;
+        }
+    }
+
+    // Филмите от една страница се обработват паралелно; чакаме всички, преди да запишем checkpoint-а
+    private void crawlPage(List<TmdbMovieResult> results, ExecutorService movieWorkers) throws InterruptedException {
+        // Вече заредените филми се пропускат без нито една допълнителна TMDB заявка
+        Set<Long> existingTmdbIds = this.movieService.findExistingTmdbIds(results);
+
+        List<Future<?>> pending = new ArrayList<>();
+        for (TmdbMovieResult movieResult : results) {
+            if (existingTmdbIds.contains(movieResult.id())) {
+                this.ingestionMetrics.recordSkipped(IngestionSkipReason.DUPLICATE);
+                this.resultsProcessed.incrementAndGet();
+                continue;
+            }
+
+            pending.add(movieWorkers.submit(() -> {
+                try {
+                    if (this.movieService.ingestMovie(movieResult, UtilMethods.orEmpty(movieResult.title()))) {
+                        this.moviesSaved.incrementAndGet();
+                    }
+                } catch (Exception exception) {
+                    log.warn("Catalog prefill failed for TMDB movie {}: {}", movieResult.id(), exception.getMessage());
+                    this.ingestionMetrics.recordFailed();
+                    this.failures.incrementAndGet();
+                } finally {
+                    this.resultsProcessed.incrementAndGet();
+                }
+            }));
+        }
+
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (ExecutionException exception) {
+                // грешките вече са отчетени в самата задача
+            }
+        }
+    }
+
+    private List<String> sourceKeys() {
+        List<String> sourceKeys = new ArrayList<>(List.of("popular", "top_rated", "now_playing"));
+
+        // Най-новите години първо – тях търсят най-често
+        for (int year = Year.now().getValue(); year >= this.discoverFromYear; year--) {
+            sourceKeys.add("discover:" + year);
+        }
+        return sourceKeys;
+    }
+
+    private String listingUrl(String sourceKey, int page) {
+        if (sourceKey.startsWith("discover:")) {
+            String year = sourceKey.substring("discover:".length());
+            return TMDB_BASE_URL + "/3/discover/movie?api_key=" + TMDB_API_KEY
+                    + "&primary_release_year=" + year + "&sort_by=popularity.desc&page=" + page;
+        }
+
+        return TMDB_BASE_URL + "/3/movie/" + sourceKey + "?api_key=" + TMDB_API_KEY + "&page=" + page;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stop();
+        Thread thread = this.crawlerThread;
+        if (thread != null) thread.interrupt();
+    }
+}
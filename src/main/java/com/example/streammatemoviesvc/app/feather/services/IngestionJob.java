@@ -0,0 +1,82 @@
+package com.example.streammatemoviesvc.app.feather.services;
+
+import com.example.streammatemoviesvc.app.commonData.models.enums.IngestionJobStatus;
+import com.example.streammatemoviesvc.app.feather.models.dtos.IngestionJobResponse;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Състоянието на една задача за зареждане на филми по търсен термин.
+ * Обновява се от работната нишка и се чете от status endpoint-а.
+ */
+@Getter
+public class IngestionJob {
+
+    private final UUID id = UUID.randomUUID();
+    private final String term;
+    private final Instant createdAt = Instant.now();
+
+    private volatile IngestionJobStatus status = IngestionJobStatus.QUEUED;
+    private volatile int totalResults;
+    private volatile String error;
+    private volatile Instant finishedAt;
+
+    private final AtomicInteger processedResults = new AtomicInteger();
+    private final AtomicInteger savedMovies = new AtomicInteger();
+    private final AtomicInteger failedResults = new AtomicInteger();
+
+    public IngestionJob(String term) {
+        this.term = term;
+    }
+
+    public void markRunning() {
+        this.status = IngestionJobStatus.RUNNING;
+    }
+
+    public void markCompleted() {
+        this.finishedAt = Instant.now();
+        this.status = IngestionJobStatus.COMPLETED;
+    }
+
+    public void markFailed(String error) {
+        this.error = error;
+        this.finishedAt = Instant.now();
+        this.status = IngestionJobStatus.FAILED;
+    }
+
+    public void setTotalResults(int totalResults) {
+        this.totalResults = totalResults;
+    }
+
+    public void recordResult(boolean saved) {
+        if (saved) this.savedMovies.incrementAndGet();
+        this.processedResults.incrementAndGet();
+    }
+
+    public void recordFailure() {
+        this.failedResults.incrementAndGet();
+        this.processedResults.incrementAndGet();
+    }
+
+    public boolean isFinished() {
+        return this.status == IngestionJobStatus.COMPLETED || this.status == IngestionJobStatus.FAILED;
+    }
+
+    public IngestionJobResponse toResponse() {
+        return IngestionJobResponse.builder()
+                .id(this.id)
+                .term(this.term)
+                .status(this.status)
+                .totalResults(this.totalResults)
+                .processedResults(this.processedResults.get())
+                .savedMovies(this.savedMovies.get())
+                .failedResults(this.failedResults.get())
+                .error(this.error)
+                .createdAt(this.createdAt)
+                .finishedAt(this.finishedAt)
+                .build();
+    }
+}
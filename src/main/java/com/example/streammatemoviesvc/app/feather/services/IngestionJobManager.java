@@ -0,0 +1,122 @@
+package com.example.streammatemoviesvc.app.feather.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Опашка за зареждане на филми от TMDB.
+ * Едновременните заявки за един и същ (нормализиран) термин се обединяват в една задача,
+ * а опашката е ограничена и отказва нови задачи, когато е пълна.
+ */
+@Slf4j
+@Service
+public class IngestionJobManager {
+
+    private final MovieService movieService;
+    private final ThreadPoolExecutor jobExecutor;
+
+    // Активните (чакащи или изпълняващи се) задачи по термин – за обединяването
+    private final Map<String, IngestionJob> activeJobsByTerm = new ConcurrentHashMap<>();
+
+    // Всички задачи по id – завършилите се пазят ограничено време за status endpoint-а
+    private final Cache<UUID, IngestionJob> jobsById;
+
+    @Autowired
+    public IngestionJobManager(MovieService movieService,
+                               @Value("${ingestion.jobs.workers:4}") int workers,
+                               @Value("${ingestion.jobs.queue-capacity:100}") int queueCapacity,
+                               @Value("${ingestion.jobs.retention:1h}") Duration retention,
+                               MeterRegistry meterRegistry) {
+
+        this.movieService = movieService;
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.jobExecutor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "IngestionJob-" + threadCounter.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.jobsById = Caffeine.newBuilder()
+                .expireAfterWrite(retention)
+                .maximumSize(10_000)
+                .build();
+
+        // executor.queued / executor.active / executor.pool.size с name=ingestionJobs
+        new ExecutorServiceMetrics(this.jobExecutor, "ingestionJobs", Tags.empty()).bindTo(meterRegistry);
+        Gauge.builder("ingestion.jobs.active", this.activeJobsByTerm, Map::size)
+                .description("Queued or running ingestion jobs")
+                .register(meterRegistry);
+    }
+
+    public IngestionJob submit(String term) {
+        String normalizedTerm = normalizeTerm(term);
+        if (normalizedTerm.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search term is empty!");
+        }
+
+        // computeIfAbsent е атомарен за ключа – само първата заявка създава и пуска задача
+        return this.activeJobsByTerm.computeIfAbsent(normalizedTerm, key -> {
+            IngestionJob job = new IngestionJob(key);
+            try {
+                this.jobExecutor.execute(() -> run(job));
+            } catch (RejectedExecutionException exception) {
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Ingestion queue is full!");
+            }
+
+            this.jobsById.put(job.getId(), job);
+            return job;
+        });
+    }
+
+    public IngestionJob getJob(UUID jobId) {
+        IngestionJob job = this.jobsById.getIfPresent(jobId);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ingestion job is not found!");
+        }
+        return job;
+    }
+
+    private void run(IngestionJob job) {
+        job.markRunning();
+        try {
+            this.movieService.ingestSearchTerm(job.getTerm(), job);
+            job.markCompleted();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            job.markFailed("Interrupted");
+        } catch (Exception exception) {
+            log.warn("Ingestion job {} for '{}' failed: {}", job.getId(), job.getTerm(), exception.getMessage());
+            job.markFailed(exception.getMessage());
+        } finally {
+            // Следваща заявка за същия термин ще стартира нова задача
+            this.activeJobsByTerm.remove(job.getTerm(), job);
+        }
+    }
+
+    static String normalizeTerm(String term) {
+        return term == null ? "" : term.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.jobExecutor.shutdownNow();
+    }
+}
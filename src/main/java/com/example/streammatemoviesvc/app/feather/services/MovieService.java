@@ -1,71 +1,134 @@
 package com.example.streammatemoviesvc.app.feather.services;
 
+import com.example.streammatemoviesvc.app.commonData.clients.TmdbClient;
 import com.example.streammatemoviesvc.app.commonData.models.entities.Actor;
+import com.example.streammatemoviesvc.app.commonData.models.enums.ExecutorMode;
 import com.example.streammatemoviesvc.app.commonData.models.enums.ImageType;
+import com.example.streammatemoviesvc.app.commonData.models.enums.IngestionSkipReason;
+import com.example.streammatemoviesvc.app.commonData.models.tmdb.TmdbMovieDetails;
+import com.example.streammatemoviesvc.app.commonData.models.tmdb.TmdbMovieResult;
+import com.example.streammatemoviesvc.app.commonData.models.tmdb.TmdbSearchResponse;
 import com.example.streammatemoviesvc.app.commonData.repositories.ActorRepository;
+import com.example.streammatemoviesvc.app.commonData.services.ActorIdentityMap;
+import com.example.streammatemoviesvc.app.commonData.services.IngestionMetrics;
+import com.example.streammatemoviesvc.app.commonData.utils.CursorUtils;
 import com.example.streammatemoviesvc.app.commonData.utils.UtilMethods;
+import com.example.streammatemoviesvc.app.configs.CacheConfig;
 import com.example.streammatemoviesvc.app.feather.models.dtos.CinemaRecordResponse;
+import com.example.streammatemoviesvc.app.feather.models.dtos.CinemaRecordSearchResponse;
+import com.example.streammatemoviesvc.app.feather.models.dtos.CursorPageResponse;
+import com.example.streammatemoviesvc.app.feather.models.dtos.MovieSearchResponse;
+import com.example.streammatemoviesvc.app.feather.models.entities.CatalogCounter;
 import com.example.streammatemoviesvc.app.feather.models.entities.Movie;
 import com.example.streammatemoviesvc.app.feather.models.entities.MovieComment;
 import com.example.streammatemoviesvc.app.feather.models.entities.MovieImage;
+import com.example.streammatemoviesvc.app.feather.models.entities.MovieRatingBucket;
+import com.example.streammatemoviesvc.app.feather.repositories.CatalogCounterRepository;
 import com.example.streammatemoviesvc.app.feather.repositories.MovieCommentRepository;
+import com.example.streammatemoviesvc.app.feather.repositories.MovieImageRepository;
+import com.example.streammatemoviesvc.app.feather.repositories.MovieRatingBucketRepository;
 import com.example.streammatemoviesvc.app.feather.repositories.MovieRepository;
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionTemplate;
 
-import java.net.URI;
+import java.io.IOException;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class MovieService {
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    private static final int MAX_SEARCH_RESULTS = 200;
+    private static final int MAX_CAST_SIZE = 21;  // addAllCast пази само първите актьори
+    private static final int MAX_BACKDROP_IMAGES = 29;
+    private static final int MAX_POSTER_IMAGES = 8;
+
+    @Value("${tmdb.cast.max-concurrency:8}")
+    private int castMaxConcurrency;
+
+    @Value("${app.async.executor-mode:platform}")
+    private ExecutorMode executorMode;
+
     private final String TMDB_API_KEY = System.getenv("TMDB_API_KEY");
-    private final String TMDB_BASE_URL = System.getenv("TMDB_BASE_URL");
 
-    private final HttpClient httpClient;
+    // Може да се насочи към локален stub (виж loadTest)
+    @Value("${tmdb.base-url:https://api.themoviedb.org}")
+    private String TMDB_BASE_URL;
+
+    private final TmdbClient tmdbClient;
     private final ActorRepository actorRepository;
+    private final ActorIdentityMap actorIdentityMap;
     private final MovieRepository movieRepository;
     private final MovieCommentRepository movieCommentRepository;
+    private final MovieImageRepository movieImageRepository;
+    private final MovieRatingBucketRepository movieRatingBucketRepository;
+    private final CatalogCounterRepository catalogCounterRepository;
+    private final IngestionMetrics ingestionMetrics;
 
     private final TransactionTemplate transactionTemplate;
     private final Executor asyncExecutor;
+    private final CacheManager cacheManager;
 
     @Autowired
-    public MovieService(HttpClient httpClient,
+    public MovieService(TmdbClient tmdbClient,
                         ActorRepository actorRepository,
+                        ActorIdentityMap actorIdentityMap,
                         MovieRepository movieRepository,
                         MovieCommentRepository movieCommentRepository,
+                        MovieImageRepository movieImageRepository,
+                        MovieRatingBucketRepository movieRatingBucketRepository,
+                        CatalogCounterRepository catalogCounterRepository,
+                        IngestionMetrics ingestionMetrics,
                         TransactionTemplate transactionTemplate,
-                        Executor asyncExecutor) {
+                        Executor asyncExecutor,
+                        CacheManager cacheManager) {
 
-        this.httpClient = httpClient;
+        this.tmdbClient = tmdbClient;
         this.actorRepository = actorRepository;
+        this.actorIdentityMap = actorIdentityMap;
         this.movieRepository = movieRepository;
         this.movieCommentRepository = movieCommentRepository;
+        this.movieImageRepository = movieImageRepository;
+        this.movieRatingBucketRepository = movieRatingBucketRepository;
+        this.catalogCounterRepository = catalogCounterRepository;
+        this.ingestionMetrics = ingestionMetrics;
         this.transactionTemplate = transactionTemplate;
         this.asyncExecutor = asyncExecutor;
+        this.cacheManager = cacheManager;
     }
 
 
@@ -74,32 +137,119 @@ public class MovieService {
         int offset = pageable.getPageNumber() * size;
         List<Object[]> rawData = movieRepository.getThirthyMoviesRawData(size, offset);
 
-        List<CinemaRecordResponse> dtos = rawData.stream().map(obj ->
-                new CinemaRecordResponse(
-                        (UUID) obj[0],
-                        (String) obj[1],  // title
-                        (String) obj[2],  // posterImgURL
-                        (String) obj[3]   // releaseDate
-                )
-        ).toList();
+        List<CinemaRecordResponse> dtos = rawData.stream().map(MovieService::toCinemaRecordResponse).toList();
 
         return new PageImpl<>(dtos, pageable, dtos.size());
     }
 
+    public CursorPageResponse<CinemaRecordResponse> getMoviesByCursor(String cursor, int size) {
+        int limit = normalizeCursorPageSize(size);
+
+        // Взимаме един ред повече, за да знаем дали има следваща страница
+        List<Object[]> rawData;
+        if (CursorUtils.isBlank(cursor)) {
+            rawData = movieRepository.getFirstMoviesRawData(limit + 1);
+        } else {
+            CursorUtils.Cursor decoded = CursorUtils.decode(cursor);
+            rawData = movieRepository.getMoviesRawDataAfterCursor(decoded.createdAt(), decoded.id(), limit + 1);
+        }
+
+        return toCursorPage(rawData, limit);
+    }
+
     public long getAllMoviesCount() {
-        return this.movieRepository.count();
+        return this.catalogCounterRepository.findValueByKey(CatalogCounter.TOTAL_MOVIES_KEY).orElse(0L);
+    }
+
+    public long getMovieDetailsVersion(UUID id) {
+        return this.movieRepository.findDetailsVersionById(id).orElseThrow(() -> new RuntimeException("Movie is not found!"));
+    }
+
+    // Ключът включва версията: нов коментар дава нов ключ, така че кеширан филм никога не се връща под по-нова версия
+    @Transactional
+    @Cacheable(cacheNames = CacheConfig.MOVIE_DETAILS_CACHE, key = "#id + ':' + #version")
+    public Movie getConcreteMovieDetails(UUID id, long version) {
+        Movie movie = this.movieRepository.findWithCastById(id).orElseThrow();
+
+        // Кешираният филм се сериализира извън сесията, затова снимките, коментарите и хистограмата се зареждат още тук
+        Hibernate.initialize(movie.getImagesList());
+        Hibernate.initialize(movie.getMovieComments());
+        Hibernate.initialize(movie.getRatingHistogram());
+        return movie;
+    }
+
+    // Версията се кешира, за да може 304 Not Modified да се върне без заявка към базата
+    @Cacheable(cacheNames = CacheConfig.CATALOG_VERSION_CACHE, key = "'catalog'")
+    public long getCatalogVersion() {
+        return this.catalogCounterRepository.findValueByKey(CatalogCounter.CATALOG_VERSION_KEY).orElse(0L);
+    }
+
+    // Cast-ът и снимките са на страница, за да се дозареждат при поискване
+    public List<Actor> getMovieCast(UUID movieId, int page, int size) {
+        return this.actorRepository.findCastByMovieId(movieId, PageRequest.of(Math.max(0, page), normalizeCursorPageSize(size)));
+    }
+
+    public List<MovieImage> getMovieImages(UUID movieId, ImageType imageType, int page, int size) {
+        return this.movieImageRepository.findByMovieId(movieId, imageType, PageRequest.of(Math.max(0, page), normalizeCursorPageSize(size)));
+    }
+
+    // Endpoint-ът без страници връща най-много MAX_SEARCH_RESULTS филма по релевантност, всеки с целия си граф.
+    // totalCount е броят на всички съвпадения, така че клиентът знае кога да мине на /search-movies-by-title
+    @Transactional
+    public MovieSearchResponse getMoviesByTitle(String title) {
+        return findRankedMovies(title, MAX_SEARCH_RESULTS, 0);
+    }
+
+    @Transactional
+    public MovieSearchResponse searchMoviesByTitle(String title, Pageable pageable) {
+        // Всеки филм носи целия си граф, затова страницата е ограничена като cursor страниците
+        int size = normalizeCursorPageSize(pageable.getPageSize());
+        return findRankedMovies(title, size, pageable.getPageNumber() * size);
+    }
+
+    public CinemaRecordSearchResponse getMoviePreviewsByTitle(String title, Pageable pageable) {
+        int size = normalizeCursorPageSize(pageable.getPageSize());
+        int offset = pageable.getPageNumber() * size;
+
+        // Само колоните за картичките – без cast и снимки
+        List<Object[]> rawData = this.movieRepository.searchRankedMoviesRawData(title, size, offset);
+
+        long totalCount = searchTotalCount(rawData, 6, title, offset);
+        return new CinemaRecordSearchResponse(totalCount, rawData.stream().map(MovieService::toCinemaRecordResponse).toList());
     }
 
-    public Movie getConcreteMovieDetails(UUID id) {
-        return this.movieRepository.findById(id).orElseThrow();
+    private MovieSearchResponse findRankedMovies(String title, int size, int offset) {
+        List<Object[]> rankedIds = this.movieRepository.searchRankedMovieIds(title, size, offset);
+        long totalCount = searchTotalCount(rankedIds, 1, title, offset);
+        if (rankedIds.isEmpty()) return new MovieSearchResponse(totalCount, new ArrayList<>());
+
+        List<UUID> ids = rankedIds.stream().map(row -> (UUID) row[0]).toList();
+
+        // findAllById не пази реда, затова го възстановяваме по релевантност
+        Map<UUID, Movie> moviesById = this.movieRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Movie::getId, Function.identity()));
+        List<Movie> movies = ids.stream().map(moviesById::get).filter(Objects::nonNull).toList();
+
+        // Отговорът съдържа cast, снимки, коментари и хистограма – @BatchSize ги зарежда с по една заявка
+        // за цялата страница, вместо по заявка на филм при сериализацията
+        movies.forEach(movie -> {
+            Hibernate.initialize(movie.getCastList());
+            Hibernate.initialize(movie.getImagesList());
+            Hibernate.initialize(movie.getMovieComments());
+            Hibernate.initialize(movie.getRatingHistogram());
+        });
+
+        return new MovieSearchResponse(totalCount, movies);
     }
 
-    public List<Movie> getMoviesByTitle(String title) {
-        return this.movieRepository.findByTitleOrSearchTagContainingIgnoreCase(title);
+    // COUNT(*) OVER() идва само с редовете – за страница след края броим отделно, вместо да върнем 0
+    private long searchTotalCount(List<Object[]> rows, int totalCountIndex, String title, int offset) {
+        if (!rows.isEmpty()) return ((Number) rows.get(0)[totalCountIndex]).longValue();
+        return offset > 0 ? this.movieRepository.findMoviesCountByTitleOrSearchTagContainingIgnoreCase(title) : 0;
     }
 
     public long findMoviesCountByGenre(String genre) {
-        return this.movieRepository.findMoviesCountByGenre(genre);
+        return this.catalogCounterRepository.findValueByKey(CatalogCounter.genreKey(genre)).orElse(0L);
     }
 
     public List<CinemaRecordResponse> getNextTwentyMoviesByGenre(String genre, Pageable pageable) {
@@ -107,32 +257,85 @@ public class MovieService {
         int offset = pageable.getPageNumber() * size;  // Пресмятаме OFFSET (page * size)
 
         List<Object[]> moviesByGenres = movieRepository.findByGenreNextTwentyMovies(genre, size, offset);
-        List<CinemaRecordResponse> dtos = moviesByGenres.stream().map(obj ->
-                new CinemaRecordResponse(
-                        (UUID) obj[0],
-                        (String) obj[1],  // title
-                        (String) obj[2],  // posterImgURL
-                        (String) obj[3]   // releaseDate
-                )
-        ).toList();
+        List<CinemaRecordResponse> dtos = moviesByGenres.stream().map(MovieService::toCinemaRecordResponse).toList();
 
         return dtos;
     }
 
+    public CursorPageResponse<CinemaRecordResponse> getMoviesByGenreAndCursor(String genre, String cursor, int size) {
+        int limit = normalizeCursorPageSize(size);
+
+        List<Object[]> rawData;
+        if (CursorUtils.isBlank(cursor)) {
+            rawData = movieRepository.findByGenreFirstMovies(genre, limit + 1);
+        } else {
+            CursorUtils.Cursor decoded = CursorUtils.decode(cursor);
+            rawData = movieRepository.findByGenreMoviesAfterCursor(genre, decoded.createdAt(), decoded.id(), limit + 1);
+        }
+
+        return toCursorPage(rawData, limit);
+    }
+
+    private static int normalizeCursorPageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+    }
+
+    // Редовете идват като [id, title, poster_img_url, release_date, ratings_count, ratings_sum, created_at]
+    private static CursorPageResponse<CinemaRecordResponse> toCursorPage(List<Object[]> rawData, int limit) {
+        return toCursorPage(rawData, limit, 6, MovieService::toCinemaRecordResponse);
+    }
+
+    // id е винаги първата колона, а createdAtIndex сочи колоната created_at
+    private static <T> CursorPageResponse<T> toCursorPage(List<Object[]> rawData, int limit,
+                                                          int createdAtIndex, Function<Object[], T> mapper) {
+        boolean hasNext = rawData.size() > limit;
+        List<Object[]> pageRows = hasNext ? rawData.subList(0, limit) : rawData;
+
+        String nextCursor = null;
+        if (hasNext) {
+            Object[] lastRow = pageRows.get(pageRows.size() - 1);
+            nextCursor = CursorUtils.encode(CursorUtils.toInstant(lastRow[createdAtIndex]), (UUID) lastRow[0]);
+        }
+
+        return new CursorPageResponse<>(pageRows.stream().map(mapper).toList(), nextCursor);
+    }
+
+    // Редовете идват като [id, title, poster_img_url, release_date, ratings_count, ratings_sum, ...]
+    public static CinemaRecordResponse toCinemaRecordResponse(Object[] obj) {
+        long ratingsCount = ((Number) obj[4]).longValue();
+        double ratingsSum = ((Number) obj[5]).doubleValue();
+
+        return new CinemaRecordResponse(
+                (UUID) obj[0],
+                (String) obj[1],  // title
+                (String) obj[2],  // posterImgURL
+                (String) obj[3],  // releaseDate
+                ratingsCount == 0 ? 0 : ratingsSum / ratingsCount,
+                ratingsCount
+        );
+    }
+
+    @Cacheable(cacheNames = CacheConfig.SEARCH_COUNTS_CACHE, key = "#title.trim().toLowerCase(T(java.util.Locale).ROOT)")
     public long getSearchedMoviesCount(String title) {
-        return this.movieRepository.findMoviesCountByTitleOrSearchTagContainingIgnoreCase(title);
+        return this.movieRepository.findMoviesCountByTitleOrSearchTagContainingIgnoreCase(title.trim());
     }
 
+    // Без @CacheEvict: детайлите се кешират по (id, details_version), а updateRatingStats вдига версията.
+    // Eviction преди commit-а би позволил паралелно четене да върне стария филм обратно в кеша
     @Transactional
-    public void postComment(String authorUsername, String authorFullName,
-                            String authorImgURL, String commentText, double rating,
-                            String createdAt,
-                            String authorId,
-                            String movieId) {
+    public MovieComment postComment(String authorUsername, String authorFullName,
+                                    String authorImgURL, String commentText, double rating,
+                                    String createdAt,
+                                    String authorId,
+                                    String movieId) {
 
         UUID id = UUID.fromString(movieId);
-        Movie movie = this.movieRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Movie is not found!"));
+
+        // Атомарният UPDATE на агрегатите е и проверката, че филмът съществува
+        if (this.movieRepository.updateRatingStats(id, 1, rating) == 0) {
+            throw new RuntimeException("Movie is not found!");
+        }
+        this.movieRatingBucketRepository.addVotes(id, MovieRatingBucket.bucketOf(rating), 1);
 
         MovieComment comment = new MovieComment();
         comment.setAuthorUsername(authorUsername);
@@ -140,36 +343,49 @@ public class MovieService {
         comment.setAuthorImgURL(authorImgURL);
         comment.setCommentText(commentText);
         comment.setRating(rating);
-        comment.setCreatedAt(createdAt);
-        comment.setMovie(movie);
+        comment.setCreatedAt(UtilMethods.parseTimestamp(createdAt).orElseGet(Instant::now));
+        comment.setMovie(this.movieRepository.getReferenceById(id));
         comment.setAuthorId(UUID.fromString(authorId));
 
-        movie.getMovieComments().add(comment);
-        this.movieRepository.save(movie);
+        return this.movieCommentRepository.save(comment);
     }
 
     public List<MovieComment> getNext10Comments(int order, UUID currentCinemaRecordId) {
         int offset = (order - 1) * 10;  // Преобразуване на order в offset
         List<Object[]> next10Comments = this.movieRepository.getNext10Comments(offset, currentCinemaRecordId);
 
-        List<MovieComment> movieComments = new ArrayList<>();
-
-        for (Object[] comment : next10Comments) {
-            MovieComment movieComment = new MovieComment();
+        return next10Comments.stream().map(MovieService::toMovieComment).toList();
+    }
 
-            movieComment.setId((UUID) comment[0]);
-            movieComment.setCommentText((String) comment[1]);
-            movieComment.setAuthorUsername((String) comment[2]);
-            movieComment.setAuthorFullName((String) comment[3]);
-            movieComment.setAuthorImgURL((String) comment[4]);
-            movieComment.setAuthorId((UUID) comment[5]);
-            movieComment.setRating((Double) comment[6]);
-            movieComment.setCreatedAt((String) comment[7]);
+    public CursorPageResponse<MovieComment> getCommentsByCursor(UUID currentCinemaRecordId, String cursor, int size) {
+        int limit = normalizeCursorPageSize(size);
 
-            movieComments.add(movieComment);
+        List<Object[]> rawData;
+        if (CursorUtils.isBlank(cursor)) {
+            rawData = this.movieCommentRepository.getFirstComments(currentCinemaRecordId, limit + 1);
+        } else {
+            CursorUtils.Cursor decoded = CursorUtils.decode(cursor);
+            rawData = this.movieCommentRepository.getCommentsAfterCursor(currentCinemaRecordId,
+                    decoded.createdAt(), decoded.id(), limit + 1);
         }
 
-        return movieComments;
+        return toCursorPage(rawData, limit, 7, MovieService::toMovieComment);
+    }
+
+    // Редовете идват като [id, comment_text, author_username, author_full_name, author_img_url, author_id, rating, created_at]
+    private static MovieComment toMovieComment(Object[] comment) {
+        MovieComment movieComment = new MovieComment();
+
+        movieComment.setId((UUID) comment[0]);
+        movieComment.setCommentText((String) comment[1]);
+        movieComment.setAuthorUsername((String) comment[2]);
+        movieComment.setAuthorFullName((String) comment[3]);
+        movieComment.setAuthorImgURL((String) comment[4]);
+        movieComment.setAuthorId((UUID) comment[5]);
+        movieComment.setRating((Double) comment[6]);
+        movieComment.setCreatedAt(CursorUtils.toInstant(comment[7]));
+
+        return movieComment;
     }
 
     @Transactional
@@ -177,232 +393,320 @@ public class MovieService {
         UUID currentMovieId = UUID.fromString(movieId);
         UUID currentCommentId = UUID.fromString(commentId);
 
-        // Изтегляне на филма по ID
-        Movie movie = this.movieRepository.findById(currentMovieId)
-                .orElseThrow(() -> new RuntimeException("Movie not found!"));
-
-        MovieComment commentToDelete = movie.getMovieComments().stream()
-                .filter(comment -> comment.getId().equals(currentCommentId))
-                .findFirst()
+        // Един DELETE по PK + movie_id, без да зареждаме филма и всичките му коментари
+        double rating = this.movieCommentRepository.deleteReturningRating(currentCommentId, currentMovieId)
                 .orElseThrow(() -> new RuntimeException("Comment not found!"));
 
-        movie.getMovieComments().remove(commentToDelete);
-        this.movieCommentRepository.delete(commentToDelete);
-
-        this.movieRepository.save(movie);
+        this.movieRepository.updateRatingStats(currentMovieId, -1, -rating);
+        this.movieRatingBucketRepository.addVotes(currentMovieId, MovieRatingBucket.bucketOf(rating), -1);
     }
 
-    @Async
-    public CompletableFuture<List<MovieImage>> extractDetailsImages(JsonArray backdropsJsonAr, ImageType imageType, int limit) {
-        if (backdropsJsonAr == null || imageType == null) {
-            return CompletableFuture.completedFuture(new ArrayList<>());
+    /**
+     * Чете само file_path от първите backdropLimit backdrops и posterLimit posters.
+     * Останалите елементи се прескачат, без да се създават обекти, а четенето спира,
+     * щом и двата масива са обработени.
+     */
+    public static List<MovieImage> readDetailsImages(JsonParser parser, int backdropLimit, int posterLimit) throws IOException {
+        List<MovieImage> images = new ArrayList<>();
+        if (parser.nextToken() != JsonToken.START_OBJECT) return images;
+
+        boolean backdropsRead = false;
+        boolean postersRead = false;
+        while (!(backdropsRead && postersRead) && parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if ("backdrops".equals(fieldName) && value == JsonToken.START_ARRAY) {
+                readImageArray(parser, ImageType.BACKDROP, backdropLimit, images);
+                backdropsRead = true;
+            } else if ("posters".equals(fieldName) && value == JsonToken.START_ARRAY) {
+                readImageArray(parser, ImageType.POSTER, posterLimit, images);
+                postersRead = true;
+            } else {
+                parser.skipChildren();
+            }
         }
 
-        List<MovieImage> backdropImages = new ArrayList<>();
+        return images;
+    }
 
+    private static void readImageArray(JsonParser parser, ImageType imageType, int limit, List<MovieImage> images) throws IOException {
         int count = 0;
-        for (JsonElement jsonElement : backdropsJsonAr) {
-            MovieImage image = new MovieImage();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            if (count == limit) {
+                parser.skipChildren();
+                continue;
+            }
+
+            String filePath = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if ("file_path".equals(fieldName)) filePath = parser.getValueAsString();
+                else parser.skipChildren();
+            }
 
-            if (imageType.equals(ImageType.BACKDROP)) image.setImageType(ImageType.BACKDROP);
-            else image.setImageType(ImageType.POSTER);
+            if (filePath != null) {
+                images.add(new MovieImage().setImageType(imageType).setImageURL(filePath));
+                count++;
+            }
+        }
+    }
 
-            backdropImages.add(image.setImageURL(jsonElement.getAsJsonObject().get("file_path")
-                    .getAsString()));
+    // Изпълнява се синхронно в нишката на IngestionJobManager и отчита прогреса в job-а
+    public void ingestSearchTerm(String movieName, IngestionJob job) throws IOException, InterruptedException {
+        String encodedMovieName = URLEncoder.encode(movieName, StandardCharsets.UTF_8);
+        String searchQuery = TMDB_BASE_URL + "/3/search/movie?api_key=" + TMDB_API_KEY + "&query=" + encodedMovieName;
 
-            if (count++ == limit) break;
+        TmdbSearchResponse searchResponse = this.tmdbClient.get(searchQuery, TmdbSearchResponse.class);
+        if (searchResponse == null) {
+            throw new RuntimeException("TMDB search failed!");
         }
 
-        return CompletableFuture.completedFuture(backdropImages);
-    }
+        List<TmdbMovieResult> results = searchResponse.results();
+        job.setTotalResults(results.size());
 
-    @Async
-    public CompletableFuture<Void> searchForMovies(String movieName) {
-        if (movieName.trim().isEmpty()) return new CompletableFuture<Void>();
+        // Една заявка за всички резултати – вече заредените филми не минават през credits/images/details
+        Set<Long> existingTmdbIds = findExistingTmdbIds(results);
+
+        for (TmdbMovieResult movieResult : results) {
+            if (existingTmdbIds.contains(movieResult.id())) {
+                this.ingestionMetrics.recordSkipped(IngestionSkipReason.DUPLICATE);
+                job.recordResult(false);
+                continue;
+            }
 
-        CompletableFuture.supplyAsync(() -> {
+            // Грешка в един филм не спира останалите резултати
             try {
-                String encodedMovieName = URLEncoder.encode(movieName, "UTF-8");
-                String searchQuery = TMDB_BASE_URL + "/3/search/movie?api_key=" + TMDB_API_KEY + "&query=" + encodedMovieName;
-
-                HttpRequest request = HttpRequest.newBuilder().uri(URI.create(searchQuery)).build();
-                HttpResponse<String> response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    JsonObject jsonObject = new Gson().fromJson(response.body(), JsonObject.class);
-                    JsonArray results = jsonObject.get("results").getAsJsonArray();
-
-                    for (JsonElement currentMovie : results) {
-
-                        jsonObject = currentMovie.getAsJsonObject();
-                        Movie movie = new Movie();
-
-                        String movieId = UtilMethods.getJsonValue(jsonObject, "id");
-                        String title = UtilMethods.getJsonValue(jsonObject, "title");
-                        String description = UtilMethods.getJsonValue(jsonObject, "overview");
-                        String releaseDate = UtilMethods.getJsonValue(jsonObject, "release_date");
-                        String backgroundIMG = UtilMethods.getJsonValue(jsonObject, "backdrop_path");
-                        String posterIMG = UtilMethods.getJsonValue(jsonObject, "poster_path");
-                        String movieRating = UtilMethods.getJsonValue(jsonObject, "vote_average");
-
-                        // Checks:
-                        if (posterIMG.trim().isEmpty()) continue;
-                        if (releaseDate.trim().isEmpty()) continue;
-                        if (LocalDate.parse(releaseDate).isAfter(LocalDate.now())) continue;
-                        if (LocalDate.parse(releaseDate).getYear() < 2000) continue;
-                        if (movieRating.equals("0.0")) continue;
-
-                        String VidURL = "https://vidsrc.net/embed/movie/" + movieId;
-                        String castURL = TMDB_BASE_URL + "/3/movie/" + movieId + "/credits" + "?api_key=" + TMDB_API_KEY;
-
-                        UtilMethods utilMethods = new UtilMethods();
-
-                        // Стартираме асинхронни операции:
-                        CompletableFuture<List<Actor>> asyncActors = utilMethods.extractActors(
-                                castURL, this.httpClient, TMDB_BASE_URL, TMDB_API_KEY, asyncExecutor);
-                        CompletableFuture<Boolean> extractedImages = extractImagesAsync(movieId, movie);
-                        CompletableFuture<Boolean> extractGenresAndTaglineAsync = extractGenresAndTaglineAsync(movieId, encodedMovieName, movie);
-
-                        // Изчакваме резултатите
-                        List<Actor> actors = asyncActors.get();
-                        addAllCast(actors, movie);
-                        if (actors.isEmpty()) continue;
-                        if (!extractedImages.get()) continue;
-                        if (!extractGenresAndTaglineAsync.get()) continue;
-
-                        // Запазвам крайният обект:
-                        movie.setVideoURL(VidURL).setSearchTag(movieName).setTitle(title).setDescription(description)
-                                .setReleaseDate(releaseDate).setBackgroundImg_URL(backgroundIMG)
-                                .setPosterImgURL(posterIMG).setTmdbRating(movieRating)
-                                .setCreatedAt(Instant.now());
-
-                        saveMovie(title, posterIMG, movie);
-                    }
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                System.out.println(e.getMessage());
+                job.recordResult(ingestMovie(movieResult, movieName));
+            } catch (InterruptedException exception) {
+                throw exception;
+            } catch (Exception exception) {
+                log.warn("Failed to ingest TMDB result {}: {}", movieResult.id(), exception.getMessage());
+                this.ingestionMetrics.recordFailed();
+                job.recordFailure();
             }
+        }
+    }
 
-            return null;
-        }, asyncExecutor);
+    public Set<Long> findExistingTmdbIds(List<TmdbMovieResult> results) {
+        if (results.isEmpty()) return new HashSet<>();
 
-        return new CompletableFuture<Void>();
+        List<Long> tmdbIds = results.stream().map(TmdbMovieResult::id).toList();
+        return new HashSet<>(this.movieRepository.findExistingTmdbIds(tmdbIds));
     }
 
-    @Async
-    public CompletableFuture<Boolean> extractGenresAndTaglineAsync(String movieId, String encodedMovieName, Movie movie) {
-        String searchQuery = TMDB_BASE_URL + "/3/movie/" + movieId + "?api_key=" + TMDB_API_KEY;
-        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(searchQuery)).build();
+    /**
+     * Минава един TMDB резултат през филтрите, дозарежда cast, снимки и жанрове и го записва.
+     * Използва се както от търсенето, така и от CatalogPrefillCrawler. Връща true, ако филмът е записан.
+     */
+    public boolean ingestMovie(TmdbMovieResult movieResult, String movieName) throws Exception {
+        String encodedMovieName = URLEncoder.encode(movieName, StandardCharsets.UTF_8);
+        if (executorMode != ExecutorMode.VIRTUAL) {
+            return ingestSearchResult(movieResult, movieName, encodedMovieName, asyncExecutor);
+        }
 
-        return CompletableFuture.supplyAsync(() -> {
+        // Всички подзадачи на филма живеят в собствен scope и не го надживяват
+        try (ExecutorService movieScope = Executors.newVirtualThreadPerTaskExecutor()) {
             try {
-                HttpResponse<String> response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                return ingestSearchResult(movieResult, movieName, encodedMovieName, movieScope);
+            } catch (Exception exception) {
+                movieScope.shutdownNow();
+                throw exception;
+            }
+        }
+    }
 
-                if (response.statusCode() == 200) {
-                    JsonObject jsonObject = new Gson().fromJson(response.body(), JsonObject.class);
+    private boolean ingestSearchResult(TmdbMovieResult movieResult, String movieName, String encodedMovieName,
+                                       Executor movieExecutor) throws Exception {
+        Movie movie = new Movie();
+
+        String movieId = String.valueOf(movieResult.id());
+        String title = UtilMethods.orEmpty(movieResult.title());
+        String description = UtilMethods.orEmpty(movieResult.overview());
+        String releaseDate = UtilMethods.orEmpty(movieResult.releaseDate());
+        String backgroundIMG = UtilMethods.orEmpty(movieResult.backdropPath());
+        String posterIMG = UtilMethods.orEmpty(movieResult.posterPath());
+        String movieRating = UtilMethods.orEmpty(movieResult.voteAverage());
+
+        // Checks:
+        if (posterIMG.trim().isEmpty()) return skip(IngestionSkipReason.NO_POSTER);
+        if (releaseDate.trim().isEmpty()) return skip(IngestionSkipReason.NO_RELEASE_DATE);
+        if (LocalDate.parse(releaseDate).isAfter(LocalDate.now())) return skip(IngestionSkipReason.FUTURE_RELEASE);
+        if (LocalDate.parse(releaseDate).getYear() < 2000) return skip(IngestionSkipReason.BEFORE_2000);
+        if (movieRating.equals("0.0")) return skip(IngestionSkipReason.ZERO_RATING);
+
+        String VidURL = "https://vidsrc.net/embed/movie/" + movieId;
+        String castURL = TMDB_BASE_URL + "/3/movie/" + movieId + "/credits" + "?api_key=" + TMDB_API_KEY;
+
+        UtilMethods utilMethods = new UtilMethods();
+
+        // Стартираме асинхронни операции:
+        CompletableFuture<List<Actor>> asyncActors = utilMethods.extractActors(
+                castURL, this.tmdbClient, TMDB_BASE_URL, TMDB_API_KEY, movieExecutor,
+                MAX_CAST_SIZE, castMaxConcurrency);
+        CompletableFuture<Boolean> extractedImages = extractImagesAsync(movieId, movie, movieExecutor);
+        CompletableFuture<Boolean> extractGenresAndTaglineAsync = extractGenresAndTaglineAsync(movieId, encodedMovieName, movie, movieExecutor);
+
+        // Изчакваме резултатите
+        List<Actor> actors = asyncActors.get();
+        addAllCast(actors, movie);
+        if (actors.isEmpty()) return skip(IngestionSkipReason.NO_CAST);
+        if (!extractedImages.get()) return skip(IngestionSkipReason.TOO_FEW_IMAGES);
+        if (!extractGenresAndTaglineAsync.get()) return skip(IngestionSkipReason.NO_GENRES);
+
+        // Запазвам крайният обект:
+        movie.setTmdbId(movieResult.id()).setVideoURL(VidURL).setSearchTag(movieName).setTitle(title).setDescription(description)
+                .setReleaseDate(releaseDate).setBackgroundImg_URL(backgroundIMG)
+                .setPosterImgURL(posterIMG).setTmdbRating(movieRating)
+                .setCreatedAt(Instant.now());
+
+        if (!saveMovie(movie)) return skip(IngestionSkipReason.DUPLICATE);
+
+        this.ingestionMetrics.recordSaved();
+        return true;
+    }
 
-                    String specialText = UtilMethods.getJsonValue(jsonObject, "tagline");
-                    JsonElement genres = jsonObject.get("genres");
-                    StringBuilder genresString = new StringBuilder();
-                    genres.getAsJsonArray().forEach(genre -> {
-                        genresString.append(UtilMethods.getJsonValue(genre.getAsJsonObject(), "name")).append(",");
-                    });
+    private boolean skip(IngestionSkipReason reason) {
+        this.ingestionMetrics.recordSkipped(reason);
+        return false;
+    }
 
-                    if (genresString.isEmpty()) return false;
-                    movie.setSpecialText(specialText).setGenres(genresString.toString());
-                }
+    @Async
+    public CompletableFuture<Boolean> extractGenresAndTaglineAsync(String movieId, String encodedMovieName, Movie movie, Executor executor) {
+        String searchQuery = TMDB_BASE_URL + "/3/movie/" + movieId + "?api_key=" + TMDB_API_KEY;
 
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                TmdbMovieDetails details = this.tmdbClient.get(searchQuery, TmdbMovieDetails.class);
+
+                // Без детайлите филмът е непълен – не го записваме, за да се зареди при следващо търсене
+                if (details == null) return false;
+
+                String specialText = UtilMethods.orEmpty(details.tagline());
+                StringBuilder genresString = new StringBuilder();
+                List<String> genreNames = new ArrayList<>();
+                details.genres().forEach(genre -> {
+                    String genreName = UtilMethods.orEmpty(genre.name());
+                    genresString.append(genreName).append(",");
+                    genreNames.add(genreName);
+                });
+
+                if (genresString.isEmpty()) return false;
+                movie.setSpecialText(specialText).setGenres(genresString.toString());
+                movie.addAllGenres(genreNames);
+
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return false;
             } catch (Exception exception) {
-                System.out.println(exception.getMessage());
+                log.warn("Failed to extract details for TMDB movie {}: {}", movieId, exception.getMessage());
+                return false;
             }
 
             return true;
-        }, asyncExecutor);
+        }, executor);
     }
 
     @Async
-    public CompletableFuture<Boolean> extractImagesAsync(String movieId, Movie movie) {
+    public CompletableFuture<Boolean> extractImagesAsync(String movieId, Movie movie, Executor executor) {
         String searchQuery = TMDB_BASE_URL + "/3/movie/" + movieId + "/images?api_key=" + TMDB_API_KEY;
-        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(searchQuery)).build();
 
         return CompletableFuture.supplyAsync(() -> {
             try {
-                HttpResponse<String> response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    JsonObject jsonObject = new Gson().fromJson(response.body(), JsonObject.class);
-                    JsonArray backdropsJsonAr = jsonObject.getAsJsonArray("backdrops");
-                    JsonArray postersJsonAr = jsonObject.getAsJsonArray("posters");
-
-                    CompletableFuture<List<MovieImage>> allBackdropImgsFuture = extractDetailsImages(backdropsJsonAr, ImageType.BACKDROP, 29);
-                    CompletableFuture<List<MovieImage>> allPosterImages = extractDetailsImages(postersJsonAr, ImageType.POSTER, 8);
+                List<MovieImage> allImages = this.tmdbClient.get(searchQuery,
+                        parser -> readDetailsImages(parser, MAX_BACKDROP_IMAGES, MAX_POSTER_IMAGES));
+                if (allImages == null) return false;
 
-                    List<MovieImage> allImages = new ArrayList<>();
-                    allImages.addAll(allBackdropImgsFuture.get());
-                    allImages.addAll(allPosterImages.get());
-
-                    if (allImages.size() < 8) return false;
-                    movie.addAllImages(allImages);
-                }
+                if (allImages.size() < 8) return false;
+                movie.addAllImages(allImages);
 
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return false;
             } catch (Exception exception) {
-                exception.printStackTrace();
+                log.warn("Failed to extract images for TMDB movie {}: {}", movieId, exception.getMessage());
+                return false;
             }
 
             return true;
-        }, asyncExecutor);
-    }
-
-    public void saveMovie(String cinemaRecTitle, String cinemaRecPosterImage, Movie movie) {
-        transactionTemplate.execute(status -> {
-            Optional<Movie> cinemaRecResponse = this.movieRepository.findByTitleAndPosterImgURL(cinemaRecTitle, cinemaRecPosterImage);
-            if (cinemaRecResponse.isEmpty()) {
-                // "Присвояваме" актьорите към текущата сесия
-                List<Actor> managedActors = new ArrayList<>();
-                for (Actor actor : movie.getCastList()) {
-                    if (actor.getId() != null) {
-                        // Ако актьорът вече е в базата, зареждаме го отново
-                        Actor managedActor = this.actorRepository.findById(actor.getId()).orElse(actor);
-                        managedActors.add(managedActor);
-                    } else {
-                        // Ако няма ID, значи е нов – го запазваме, за да получим ID и управляван екземпляр
-                        managedActors.add(this.actorRepository.save(actor));
-                    }
-                }
-                movie.setCastList(managedActors);
-                this.movieRepository.save(movie);
-            }
-            return null;
-        });
+        }, executor);
     }
 
-    public void addAllCast(List<Actor> allCast, Movie movie) {
-        transactionTemplate.execute(status -> {
-            int count = 0;
+    public boolean saveMovie(Movie movie) {
+        List<Actor> newActors = new ArrayList<>();
 
-            for (Actor actor : allCast) {
-                Optional<Actor> existingActor = this.actorRepository
-                        .findByNameInRealLifeAndImageURL(actor.getNameInRealLife(), actor.getImageURL());
+        Boolean inserted;
+        try {
+            inserted = this.ingestionMetrics.getSaveTimer().record(() -> transactionTemplate.execute(status -> {
+                if (!this.movieRepository.existsByTmdbId(movie.getTmdbId())) {
+                    for (Actor actor : movie.getCastList()) {
+                        if (actor.getId() == null) newActors.add(actor);
+                    }
 
-                if (existingActor.isPresent()) {
-                    actor = existingActor.get();
-                }
+                    // Новите актьори се записват с ON CONFLICT, така че актьор, записан паралелно от друг филм,
+                    // не проваля транзакцията – просто взимаме неговото id
+                    this.actorIdentityMap.insertAbsent(newActors);
 
-                // Добавяме връзката между актьора и филма
-                if (!movie.getCastList().contains(actor)) {
-                    movie.getCastList().add(actor);
-                }
+                    // Всички актьори вече са в базата – референции без SELECT
+                    List<Actor> managedActors = new ArrayList<>();
+                    for (Actor actor : movie.getCastList()) {
+                        managedActors.add(this.actorRepository.getReferenceById(actor.getId()));
+                    }
 
-                // Добавяме филма към списъка на актьора
-                if (!actor.getMoviesParticipations().contains(movie)) {
-                    actor.getMoviesParticipations().add(movie);
+                    // Филмът, снимките, жанровете и movies_actors се записват при flush-а
+                    // като няколко JDBC batch-а (hibernate.jdbc.batch_size + order_inserts)
+                    movie.setCastList(managedActors);
+                    this.movieRepository.save(movie);
+
+                    // Броячите се увеличават в същата транзакция, за да не се разминат с таблицата
+                    this.catalogCounterRepository.increment(CatalogCounter.TOTAL_MOVIES_KEY, 1);
+                    this.catalogCounterRepository.increment(CatalogCounter.CATALOG_VERSION_KEY, 1);
+                    movie.getGenresList().forEach(genre ->
+                            this.catalogCounterRepository.increment(CatalogCounter.genreKey(genre.getGenre()), 1));
+                    return true;
                 }
+                return false;
+            }));
+        } catch (DataIntegrityViolationException exception) {
+            // Дубликат е само филм със същия tmdb_id, записан междувременно от друга нишка – всичко друго е грешка
+            if (!this.movieRepository.existsByTmdbId(movie.getTmdbId())) throw exception;
+
+            log.info("Skipped concurrent duplicate of TMDB movie {}: {}", movie.getTmdbId(), exception.getMostSpecificCause().getMessage());
+            return false;
+        }
 
-                if (count++ == 20) return true;
-            }
+        // Кешираме новите актьори едва след успешния commit
+        newActors.forEach(actor -> this.actorIdentityMap.remember(actor.getTmdbId(), actor.getId()));
 
-            return true;
-        });
+        // Новият филм може да промени броя на всяко кеширано търсене и всяка страница от каталога
+        if (Boolean.TRUE.equals(inserted)) {
+            Cache searchCountsCache = this.cacheManager.getCache(CacheConfig.SEARCH_COUNTS_CACHE);
+            if (searchCountsCache != null) searchCountsCache.clear();
+
+            Cache catalogVersionCache = this.cacheManager.getCache(CacheConfig.CATALOG_VERSION_CACHE);
+            if (catalogVersionCache != null) catalogVersionCache.clear();
+        }
+        return Boolean.TRUE.equals(inserted);
+    }
+
+    public void addAllCast(List<Actor> allCast, Movie movie) {
+        // TMDB понякога връща един човек с няколко роли – пазим първото срещане
+        Map<Long, Actor> castByTmdbId = new LinkedHashMap<>();
+        for (Actor actor : allCast) {
+            if (castByTmdbId.size() == MAX_CAST_SIZE) break;
+            castByTmdbId.putIfAbsent(actor.getTmdbId(), actor);
+        }
+
+        // Една заявка (или кеш) за целия cast вместо по една за всеки актьор
+        Map<Long, UUID> existingActorIds = this.actorIdentityMap.resolve(castByTmdbId.values());
+
+        for (Actor actor : castByTmdbId.values()) {
+            UUID existingId = existingActorIds.get(actor.getTmdbId());
+            if (existingId != null) actor.setId(existingId);
+
+            // Обратната страна (moviesParticipations) не се пипа – тя е mappedBy и зареждането й струва по заявка на актьор
+            movie.getCastList().add(actor);
+        }
     }
 }
@@ -0,0 +1,212 @@
+package com.example.streammatemoviesvc;
+
+import com.example.streammatemoviesvc.app.commonData.models.entities.Actor;
+import com.example.streammatemoviesvc.app.commonData.repositories.ActorRepository;
+import com.example.streammatemoviesvc.app.commonData.services.ActorIdentityMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ActorIdentityMapTest {
+
+    @Mock
+    private ActorRepository actorRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ActorIdentityMap actorIdentityMap;
+
+    @BeforeEach
+    void setUp() {
+        this.actorIdentityMap = new ActorIdentityMap(actorRepository, transactionTemplate, jdbcTemplate, 2);
+    }
+
+    @Test
+    void testResolve_CachedActorsSkipTheDatabase() {
+        // Arrange
+        UUID id = UUID.randomUUID();
+        actorIdentityMap.remember(1L, id);
+
+        // Act
+        Map<Long, UUID> result = actorIdentityMap.resolve(List.of(actor(1L, "Leonardo DiCaprio", "/leo.jpg")));
+
+        // Assert
+        assertEquals(Map.of(1L, id), result);
+        verifyNoInteractions(actorRepository);
+    }
+
+    @Test
+    void testResolve_EvictsLeastRecentlyUsedIdentity() {
+        // Arrange - кешът е за двама; 1 е използван скоро, затова 2 отпада
+        actorIdentityMap.remember(1L, UUID.randomUUID());
+        actorIdentityMap.remember(2L, UUID.randomUUID());
+        actorIdentityMap.resolve(List.of(actor(1L, "Leonardo DiCaprio", "/leo.jpg")));
+        actorIdentityMap.remember(3L, UUID.randomUUID());
+
+        when(actorRepository.existsByTmdbIdIsNull()).thenReturn(false);
+        when(actorRepository.findIdsByTmdbIdIn(List.of(2L))).thenReturn(List.of());
+
+        // Act
+        actorIdentityMap.resolve(List.of(actor(1L, "Leonardo DiCaprio", "/leo.jpg"),
+                actor(2L, "Tom Hardy", "/tom.jpg"),
+                actor(3L, "Elliot Page", "/elliot.jpg")));
+
+        // Assert
+        verify(actorRepository, times(1)).findIdsByTmdbIdIn(List.of(2L));
+    }
+
+    @Test
+    void testResolve_LooksUpMissingActorsInOneQueryAndCachesThem() {
+        // Arrange
+        UUID cachedId = UUID.randomUUID();
+        UUID storedId = UUID.randomUUID();
+        actorIdentityMap.remember(1L, cachedId);
+
+        List<Actor> cast = List.of(actor(1L, "Leonardo DiCaprio", "/leo.jpg"),
+                actor(2L, "Tom Hardy", "/tom.jpg"),
+                actor(3L, "Elliot Page", "/elliot.jpg"));
+        when(actorRepository.existsByTmdbIdIsNull()).thenReturn(false);
+        when(actorRepository.findIdsByTmdbIdIn(List.of(2L, 3L))).thenReturn(List.<Object[]>of(new Object[]{2L, storedId}));
+
+        // Act
+        Map<Long, UUID> result = actorIdentityMap.resolve(cast);
+
+        // Assert - 3 е нов актьор и остава без id
+        assertEquals(Map.of(1L, cachedId, 2L, storedId), result);
+        verify(actorRepository, times(1)).findIdsByTmdbIdIn(anyCollection());
+
+        assertEquals(Map.of(2L, storedId), actorIdentityMap.resolve(List.of(actor(2L, "Tom Hardy", "/tom.jpg"))));
+        verify(actorRepository, times(1)).findIdsByTmdbIdIn(anyCollection());
+    }
+
+    @Test
+    void testResolve_MatchesLegacyActorByNameAndImageAndAssignsTmdbId() {
+        // Arrange
+        UUID legacyId = UUID.randomUUID();
+        executeTransactionCallbacks();
+        when(actorRepository.existsByTmdbIdIsNull()).thenReturn(true, false);
+        when(actorRepository.findIdsOrLegacyActors(List.of(5L), List.of("/tom.jpg")))
+                .thenReturn(List.<Object[]>of(new Object[]{null, legacyId, "Tom Hardy", "/tom.jpg"}));
+        when(actorRepository.assignTmdbId(legacyId, 5L)).thenReturn(1);
+
+        // Act
+        Map<Long, UUID> result = actorIdentityMap.resolve(List.of(actor(5L, "Tom Hardy", "/tom.jpg")));
+
+        // Assert - след свързването на последния legacy актьор търсенето по снимка спира
+        assertEquals(Map.of(5L, legacyId), result);
+        verify(actorRepository).assignTmdbId(legacyId, 5L);
+
+        when(actorRepository.findIdsByTmdbIdIn(List.of(6L))).thenReturn(List.of());
+        actorIdentityMap.resolve(List.of(actor(6L, "Elliot Page", "/elliot.jpg")));
+        verify(actorRepository, times(2)).existsByTmdbIdIsNull();
+        verify(actorRepository, times(1)).findIdsOrLegacyActors(anyCollection(), anyCollection());
+    }
+
+    @Test
+    void testResolve_LegacyCandidatesComeWithTheIdentityQuery() {
+        // Arrange - има legacy актьори, но не за тези снимки
+        when(actorRepository.existsByTmdbIdIsNull()).thenReturn(true);
+        when(actorRepository.findIdsOrLegacyActors(anyCollection(), anyCollection())).thenReturn(List.of());
+
+        // Act
+        actorIdentityMap.resolve(List.of(actor(5L, "Tom Hardy", "/tom.jpg")));
+        actorIdentityMap.resolve(List.of(actor(6L, "Elliot Page", "/elliot.jpg")));
+
+        // Assert - по една заявка на филм, без повторна проверка за legacy актьори
+        verify(actorRepository, times(1)).existsByTmdbIdIsNull();
+        verify(actorRepository, times(2)).findIdsOrLegacyActors(anyCollection(), anyCollection());
+        verify(actorRepository, never()).findIdsByTmdbIdIn(anyCollection());
+    }
+
+    @Test
+    void testResolve_ConcurrentlyLinkedTmdbIdUsesTheWinningActor() {
+        // Arrange - дублиран legacy ред: друг ingestion е дал tmdb_id 5 на другия ред
+        UUID legacyId = UUID.randomUUID();
+        UUID winnerId = UUID.randomUUID();
+        executeTransactionCallbacks();
+        when(actorRepository.existsByTmdbIdIsNull()).thenReturn(true);
+        when(actorRepository.findIdsOrLegacyActors(List.of(5L), List.of("/tom.jpg")))
+                .thenReturn(List.<Object[]>of(new Object[]{null, legacyId, "Tom Hardy", "/tom.jpg"}));
+        when(actorRepository.assignTmdbId(legacyId, 5L))
+                .thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint"));
+        when(actorRepository.findIdsByTmdbIdIn(List.of(5L))).thenReturn(List.<Object[]>of(new Object[]{5L, winnerId}));
+
+        // Act
+        Map<Long, UUID> result = actorIdentityMap.resolve(List.of(actor(5L, "Tom Hardy", "/tom.jpg")));
+
+        // Assert
+        assertEquals(Map.of(5L, winnerId), result);
+    }
+
+    @Test
+    void testResolve_LegacyRowTakenByAnotherPersonLeavesActorUnresolved() {
+        // Arrange - редът вече има друг tmdb_id, а за 5 няма запис
+        UUID legacyId = UUID.randomUUID();
+        executeTransactionCallbacks();
+        when(actorRepository.existsByTmdbIdIsNull()).thenReturn(true);
+        when(actorRepository.findIdsOrLegacyActors(List.of(5L), List.of("/tom.jpg")))
+                .thenReturn(List.<Object[]>of(new Object[]{null, legacyId, "Tom Hardy", "/tom.jpg"}));
+        when(actorRepository.assignTmdbId(legacyId, 5L)).thenReturn(0);
+        when(actorRepository.findIdsByTmdbIdIn(List.of(5L))).thenReturn(List.of());
+
+        // Act
+        Map<Long, UUID> result = actorIdentityMap.resolve(List.of(actor(5L, "Tom Hardy", "/tom.jpg")));
+
+        // Assert - актьорът ще се запише като нов през insertAbsent
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testInsertAbsent_TakesIdsOfActorsInsertedConcurrently() {
+        // Arrange - актьор 1 е записан от друг филм междувременно и ON CONFLICT е пропуснал нашия ред
+        UUID concurrentId = UUID.randomUUID();
+        Actor alreadySaved = actor(1L, "Leonardo DiCaprio", "/leo.jpg");
+        Actor newActor = actor(2L, "Tom Hardy", "/tom.jpg");
+        List<Actor> actors = List.of(alreadySaved, newActor);
+
+        when(actorRepository.findIdsByTmdbIdIn(List.of(1L, 2L))).thenAnswer(invocation -> List.of(
+                new Object[]{1L, concurrentId},
+                new Object[]{2L, newActor.getId()}));
+
+        // Act
+        actorIdentityMap.insertAbsent(actors);
+
+        // Assert
+        verify(jdbcTemplate).batchUpdate(contains("ON CONFLICT (tmdb_id) DO NOTHING"), eq(actors), eq(2),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(concurrentId, alreadySaved.getId());
+        assertNotNull(newActor.getId());
+        assertNotEquals(concurrentId, newActor.getId());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executeTransactionCallbacks() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    private static Actor actor(Long tmdbId, String name, String imageURL) {
+        return new Actor().setTmdbId(tmdbId).setNameInRealLife(name).setImageURL(imageURL);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.streammatemoviesvc;
+
+import com.example.streammatemoviesvc.app.commonData.clients.TmdbClient;
+import com.example.streammatemoviesvc.app.commonData.models.tmdb.TmdbMovieResult;
+import com.example.streammatemoviesvc.app.commonData.models.tmdb.TmdbSearchResponse;
+import com.example.streammatemoviesvc.app.commonData.services.IngestionMetrics;
+import com.example.streammatemoviesvc.app.feather.models.entities.CrawlCheckpoint;
+import com.example.streammatemoviesvc.app.feather.repositories.CrawlCheckpointRepository;
+import com.example.streammatemoviesvc.app.feather.services.CatalogPrefillCrawler;
+import com.example.streammatemoviesvc.app.feather.services.MovieService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Year;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogPrefillCrawlerTest {
+
+    private static final int PAGES_PER_SOURCE = 2;
+    private static final int THIS_YEAR = Year.now().getValue();
+
+    @Mock
+    private TmdbClient tmdbClient;
+
+    @Mock
+    private MovieService movieService;
+
+    @Mock
+    private CrawlCheckpointRepository checkpointRepository;
+
+    @Mock
+    private IngestionMetrics ingestionMetrics;
+
+    // Checkpoint-ите живеят в паметта, както биха живели в таблицата между две стартирания
+    private final Map<String, CrawlCheckpoint> checkpoints = new HashMap<>();
+    private final List<String> requestedPages = new CopyOnWriteArrayList<>();
+    private final List<String> savedCheckpoints = new CopyOnWriteArrayList<>();
+
+    // Ако не е null, crawler-ът получава stop() по време на тази страница
+    private volatile String stopAtPage;
+    private CatalogPrefillCrawler currentCrawler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(checkpointRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(checkpoints.get(invocation.<String>getArgument(0))));
+        when(checkpointRepository.save(any(CrawlCheckpoint.class))).thenAnswer(invocation -> {
+            CrawlCheckpoint checkpoint = invocation.getArgument(0);
+            checkpoints.put(checkpoint.getSourceKey(), checkpoint);
+            savedCheckpoints.add(checkpoint.getSourceKey() + "#" + checkpoint.getLastPage());
+            return checkpoint;
+        });
+
+        // Всяка страница носи по един филм; TMDB казва, че има 10 страници, но crawler-ът спира на PAGES_PER_SOURCE
+        when(tmdbClient.get(anyString(), eq(TmdbSearchResponse.class))).thenAnswer(invocation -> {
+            String page = pageLabel(invocation.getArgument(0));
+            requestedPages.add(page);
+            if (page.equals(stopAtPage)) currentCrawler.stop();
+
+            TmdbMovieResult movie = new TmdbMovieResult(requestedPages.size(), page, null, null, null, null, null);
+            return new TmdbSearchResponse(List.of(movie), 10);
+        });
+        when(movieService.ingestMovie(any(TmdbMovieResult.class), anyString())).thenReturn(true);
+    }
+
+    @Test
+    void testCrawl_ProgressesThroughSourcesInOrderAndCheckpointsEveryPage() throws Exception {
+        // Act
+        runToCompletion(newCrawler());
+
+        // Assert
+        List<String> expectedPages = List.of(
+                "popular#1", "popular#2",
+                "top_rated#1", "top_rated#2",
+                "now_playing#1", "now_playing#2",
+                "discover:" + THIS_YEAR + "#1", "discover:" + THIS_YEAR + "#2");
+        assertEquals(expectedPages, requestedPages);
+        assertEquals(expectedPages, savedCheckpoints);
+        assertTrue(checkpoints.values().stream().allMatch(CrawlCheckpoint::isCompleted));
+        verify(movieService, times(expectedPages.size())).ingestMovie(any(TmdbMovieResult.class), anyString());
+    }
+
+    @Test
+    void testCrawl_ResumesFromCheckpointAfterStopAndRestart() throws Exception {
+        // Arrange - спираме по средата на top_rated
+        stopAtPage = "top_rated#1";
+        runToCompletion(newCrawler());
+        assertEquals(List.of("popular#1", "popular#2", "top_rated#1"), requestedPages);
+        assertEquals(1, checkpoints.get("top_rated").getLastPage());
+        assertFalse(checkpoints.get("top_rated").isCompleted());
+
+        // Act - нов процес със същите checkpoint-и
+        stopAtPage = null;
+        requestedPages.clear();
+        runToCompletion(newCrawler());
+
+        // Assert - завършеният popular се пропуска, а top_rated продължава от страница 2
+        assertEquals(List.of("top_rated#2",
+                "now_playing#1", "now_playing#2",
+                "discover:" + THIS_YEAR + "#1", "discover:" + THIS_YEAR + "#2"), requestedPages);
+    }
+
+    @Test
+    void testStart_ReturnsFalseWhileRunning() throws Exception {
+        // Arrange
+        stopAtPage = "popular#1";
+        CatalogPrefillCrawler crawler = newCrawler();
+
+        // Act & Assert
+        assertTrue(crawler.start());
+        assertFalse(crawler.start());
+        awaitStopped(crawler);
+    }
+
+    // Една работна нишка, един discover източник (текущата година) и източниците не изтичат по време на теста
+    private CatalogPrefillCrawler newCrawler() {
+        this.currentCrawler = new CatalogPrefillCrawler(tmdbClient, movieService, checkpointRepository, ingestionMetrics,
+                false, 1, PAGES_PER_SOURCE, THIS_YEAR, Duration.ofDays(7));
+        return this.currentCrawler;
+    }
+
+    private static void runToCompletion(CatalogPrefillCrawler crawler) throws InterruptedException {
+        assertTrue(crawler.start());
+        awaitStopped(crawler);
+    }
+
+    private static void awaitStopped(CatalogPrefillCrawler crawler) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (crawler.getStatus().isRunning()) {
+            assertTrue(System.nanoTime() < deadline, "Catalog prefill did not stop");
+            Thread.sleep(10);
+        }
+    }
+
+    // .../3/movie/popular?...&page=2 -> popular#2, .../3/discover/movie?...primary_release_year=2026...&page=1 -> discover:2026#1
+    private static String pageLabel(String url) {
+        String page = url.substring(url.lastIndexOf("page=") + "page=".length());
+        if (url.contains("/3/discover/movie")) {
+            String year = url.replaceAll(".*primary_release_year=(\\d+).*", "$1");
+            return "discover:" + year + "#" + page;
+        }
+
+        String source = url.replaceAll(".*/3/movie/([a-z_]+)\\?.*", "$1");
+        return source + "#" + page;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.streammatemoviesvc;
+
+import com.example.streammatemoviesvc.app.commonData.models.enums.IngestionJobStatus;
+import com.example.streammatemoviesvc.app.feather.services.IngestionJob;
+import com.example.streammatemoviesvc.app.feather.services.IngestionJobManager;
+import com.example.streammatemoviesvc.app.feather.services.MovieService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionJobManagerTest {
+
+    @Mock
+    private MovieService movieService;
+
+    // Една работна нишка и място за една чакаща задача
+    private IngestionJobManager ingestionJobManager;
+
+    private final CountDownLatch workerStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseWorker = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        this.ingestionJobManager = new IngestionJobManager(movieService, 1, 1, Duration.ofHours(1), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.releaseWorker.countDown();
+        this.ingestionJobManager.shutdown();
+    }
+
+    @Test
+    void testSubmit_SameNormalizedTermJoinsTheActiveJob() throws Exception {
+        // Arrange
+        blockWorker();
+
+        // Act
+        IngestionJob first = ingestionJobManager.submit("  The   Matrix ");
+        IngestionJob second = ingestionJobManager.submit("the matrix");
+        IngestionJob other = ingestionJobManager.submit("Inception");
+
+        // Assert
+        assertSame(first, second);
+        assertEquals("the matrix", first.getTerm());
+        assertNotSame(first, other);
+
+        releaseWorker.countDown();
+        awaitFinished(first);
+        verify(movieService, times(1)).ingestSearchTerm(eq("the matrix"), any(IngestionJob.class));
+    }
+
+    @Test
+    void testSubmit_FullQueueIsRejectedWith429() throws Exception {
+        // Arrange - първата задача заема нишката, втората – опашката
+        blockWorker();
+        ingestionJobManager.submit("The Matrix");
+        assertTrue(workerStarted.await(5, TimeUnit.SECONDS));
+        ingestionJobManager.submit("Inception");
+
+        // Act
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> ingestionJobManager.submit("Interstellar"));
+
+        // Assert - отказаният термин не остава "активен", така че по-късен опит пуска нова задача
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exception.getStatusCode());
+
+        releaseWorker.countDown();
+        IngestionJob retried = awaitAccepted("Interstellar");
+        awaitFinished(retried);
+        assertEquals(IngestionJobStatus.COMPLETED, retried.getStatus());
+    }
+
+    @Test
+    void testGetJob_FinishedJobsStayQueryable() throws Exception {
+        // Arrange
+        doAnswer(invocation -> {
+            if ("broken".equals(invocation.getArgument(0))) throw new IOException("TMDB is down");
+            return null;
+        }).when(movieService).ingestSearchTerm(anyString(), any(IngestionJob.class));
+
+        // Act
+        IngestionJob completed = ingestionJobManager.submit("The Matrix");
+        IngestionJob failed = ingestionJobManager.submit("Broken");
+        awaitFinished(completed);
+        awaitFinished(failed);
+
+        // Assert
+        assertSame(completed, ingestionJobManager.getJob(completed.getId()));
+        assertEquals(IngestionJobStatus.COMPLETED, ingestionJobManager.getJob(completed.getId()).getStatus());
+        assertEquals(IngestionJobStatus.FAILED, ingestionJobManager.getJob(failed.getId()).getStatus());
+        assertEquals("TMDB is down", ingestionJobManager.getJob(failed.getId()).getError());
+        assertNotNull(ingestionJobManager.getJob(failed.getId()).getFinishedAt());
+    }
+
+    @Test
+    void testGetJob_UnknownIdIs404() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> ingestionJobManager.getJob(UUID.randomUUID()));
+
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+    }
+
+    @Test
+    void testSubmit_BlankTermIs400() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> ingestionJobManager.submit("   "));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        verifyNoInteractions(movieService);
+    }
+
+    // Всяка задача чака releaseWorker, за да може опашката да се напълни детерминирано
+    private void blockWorker() throws Exception {
+        doAnswer(invocation -> {
+            workerStarted.countDown();
+            assertTrue(releaseWorker.await(5, TimeUnit.SECONDS));
+            return null;
+        }).when(movieService).ingestSearchTerm(anyString(), any(IngestionJob.class));
+    }
+
+    // Опашката се освобождава, докато работната нишка довършва предишните задачи
+    private IngestionJob awaitAccepted(String term) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            try {
+                return ingestionJobManager.submit(term);
+            } catch (ResponseStatusException exception) {
+                if (System.nanoTime() > deadline) throw exception;
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static void awaitFinished(IngestionJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!job.isFinished()) {
+            assertTrue(System.nanoTime() < deadline, "Job " + job.getTerm() + " did not finish");
+            Thread.sleep(10);
+        }
+    }
+}
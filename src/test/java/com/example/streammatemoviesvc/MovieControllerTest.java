@@ -2,9 +2,14 @@ package com.example.streammatemoviesvc;
 
 import com.example.streammatemoviesvc.app.feather.controllers.MovieController;
 import com.example.streammatemoviesvc.app.feather.models.dtos.CinemaRecordResponse;
+import com.example.streammatemoviesvc.app.feather.models.dtos.CinemaRecordSearchResponse;
+import com.example.streammatemoviesvc.app.feather.models.dtos.MovieSearchResponse;
 import com.example.streammatemoviesvc.app.feather.models.entities.Movie;
 import com.example.streammatemoviesvc.app.feather.models.entities.MovieComment;
 import com.example.streammatemoviesvc.app.feather.repositories.MovieRepository;
+import com.example.streammatemoviesvc.app.feather.services.CatalogPrefillCrawler;
+import com.example.streammatemoviesvc.app.feather.services.IngestionJob;
+import com.example.streammatemoviesvc.app.feather.services.IngestionJobManager;
 import com.example.streammatemoviesvc.app.feather.services.MovieService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -42,6 +47,12 @@ public class MovieControllerTest {
     @MockBean
     private MovieService movieService; // Мока на MovieService
 
+    @MockBean
+    private IngestionJobManager ingestionJobManager;
+
+    @MockBean
+    private CatalogPrefillCrawler catalogPrefillCrawler;
+
     @Autowired
     private MovieController movieController; // Автоматично инжектиране на мока в контролера
 
@@ -51,6 +62,17 @@ public class MovieControllerTest {
         mockMvc = MockMvcBuilders.standaloneSetup(movieController).build();
     }
 
+    @Test
+    public void testSearchMovies_ReturnsIngestionJob() throws Exception {
+        IngestionJob job = new IngestionJob("batman");
+        when(ingestionJobManager.submit("batman")).thenReturn(job);
+
+        mockMvc.perform(post("/search-movies").content("batman"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.id").value(job.getId().toString()))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+    }
+
     @Test
     public void testGetAllMoviesCount() throws Exception {
         long expectedCount = 100L;
@@ -92,14 +114,33 @@ public class MovieControllerTest {
         Movie mockMovie = new Movie();
         mockMovie.setId(UUID.fromString(movieId));
         mockMovie.setTitle("Inception");
-        when(movieService.getConcreteMovieDetails(UUID.fromString(movieId))).thenReturn(mockMovie);
+        when(movieService.getMovieDetailsVersion(UUID.fromString(movieId))).thenReturn(2L);
+        when(movieService.getConcreteMovieDetails(UUID.fromString(movieId), 2L)).thenReturn(mockMovie);
 
         mockMvc.perform(get("/get-movie-details")
                         .param("id", movieId))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"movie-" + movieId + "-2\""))
                 .andExpect(jsonPath("$.title").value("Inception"));
     }
 
+    @Test
+    public void testGetConcreteMovieDetails_NotModifiedWhenETagMatches() throws Exception {
+        String movieId = "123e4567-e89b-12d3-a456-426614174000";
+        when(movieService.getMovieDetailsVersion(UUID.fromString(movieId))).thenReturn(3L);
+
+        mockMvc.perform(get("/get-movie-details")
+                        .param("id", movieId)
+                        .header("If-None-Match", "\"movie-" + movieId + "-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"movie-" + movieId + "-3\""))
+                .andExpect(header().string("Cache-Control", "no-cache, public"))
+                .andExpect(content().string(""));
+
+        // 304 не зарежда филма
+        verify(movieService, never()).getConcreteMovieDetails(any(UUID.class), anyLong());
+    }
+
     @Test
     public void testGetNextTwentyMoviesByGenre() throws Exception {
         String genre = "Action";
@@ -143,15 +184,32 @@ public class MovieControllerTest {
         movie2.setTitle("Inception");
 
         List<Movie> mockMovies = Arrays.asList(movie1, movie2);
-        when(movieService.getMoviesByTitle(title)).thenReturn(mockMovies);
+        when(movieService.getMoviesByTitle(title)).thenReturn(new MovieSearchResponse(250, mockMovies));
 
         mockMvc.perform(get("/get-movies-by-title")
                         .param("title", title))
                 .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "250"))
                 .andExpect(jsonPath("$[0].title").value("Inception"))
                 .andExpect(jsonPath("$[1].title").value("Inception"));
     }
 
+    @Test
+    public void testGetMoviePreviewsByTitle() throws Exception {
+        String title = "Inception";
+        CinemaRecordResponse preview = new CinemaRecordResponse();
+        preview.setTitle("Inception");
+
+        CinemaRecordSearchResponse mockResponse = new CinemaRecordSearchResponse(1, List.of(preview));
+        when(movieService.getMoviePreviewsByTitle(title, PageRequest.of(0, 20))).thenReturn(mockResponse);
+
+        mockMvc.perform(get("/get-movie-previews-by-title")
+                        .param("title", title))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalCount").value(1))
+                .andExpect(jsonPath("$.results[0].title").value("Inception"));
+    }
+
     @Test
     public void testGetSearchedMoviesCount() throws Exception {
         String title = "Inception";
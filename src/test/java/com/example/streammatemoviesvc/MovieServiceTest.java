@@ -1,16 +1,25 @@
 package com.example.streammatemoviesvc;
 
+import com.example.streammatemoviesvc.app.commonData.clients.TmdbClient;
 import com.example.streammatemoviesvc.app.commonData.models.enums.ImageType;
 import com.example.streammatemoviesvc.app.commonData.repositories.ActorRepository;
+import com.example.streammatemoviesvc.app.commonData.services.IngestionMetrics;
 import com.example.streammatemoviesvc.app.feather.models.dtos.CinemaRecordResponse;
+import com.example.streammatemoviesvc.app.feather.models.dtos.CinemaRecordSearchResponse;
+import com.example.streammatemoviesvc.app.feather.models.dtos.CursorPageResponse;
+import com.example.streammatemoviesvc.app.feather.models.dtos.MovieSearchResponse;
+import com.example.streammatemoviesvc.app.feather.models.entities.CatalogCounter;
 import com.example.streammatemoviesvc.app.feather.models.entities.Movie;
 import com.example.streammatemoviesvc.app.feather.models.entities.MovieComment;
 import com.example.streammatemoviesvc.app.feather.models.entities.MovieImage;
+import com.example.streammatemoviesvc.app.feather.repositories.CatalogCounterRepository;
 import com.example.streammatemoviesvc.app.feather.repositories.MovieCommentRepository;
+import com.example.streammatemoviesvc.app.feather.repositories.MovieImageRepository;
+import com.example.streammatemoviesvc.app.feather.repositories.MovieRatingBucketRepository;
 import com.example.streammatemoviesvc.app.feather.repositories.MovieRepository;
 import com.example.streammatemoviesvc.app.feather.services.MovieService;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -21,11 +30,13 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.support.TransactionTemplate;
 
-import java.net.http.HttpClient;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,11 +48,23 @@ class MovieServiceTest {
     @Mock
     private MovieCommentRepository movieCommentRepository;
 
+    @Mock
+    private MovieImageRepository movieImageRepository;
+
+    @Mock
+    private MovieRatingBucketRepository movieRatingBucketRepository;
+
+    @Mock
+    private CatalogCounterRepository catalogCounterRepository;
+
     @Mock
     private ActorRepository actorRepository;
 
     @Mock
-    private HttpClient httpClient;
+    private TmdbClient tmdbClient;
+
+    @Mock
+    private IngestionMetrics ingestionMetrics;
 
     @Mock
     private TransactionTemplate transactionTemplate;
@@ -65,15 +88,32 @@ class MovieServiceTest {
         Movie movie = new Movie();
         movie.setMovieComments(new ArrayList<>());
 
-        when(movieRepository.findById(movieUUID)).thenReturn(Optional.of(movie));
+        when(movieRepository.updateRatingStats(movieUUID, 1, rating)).thenReturn(1);
+        when(movieRepository.getReferenceById(movieUUID)).thenReturn(movie);
+        when(movieCommentRepository.save(any(MovieComment.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
-        movieService.postComment(authorUsername, authorFullName, authorImgURL, commentText, rating, createdAt, authorId, movieId);
+        MovieComment result = movieService.postComment(authorUsername, authorFullName, authorImgURL, commentText, rating, createdAt, authorId, movieId);
 
-        // Assert
-        assertEquals(1, movie.getMovieComments().size());
-        verify(movieRepository, times(1)).findById(movieUUID);
-        verify(movieRepository, times(1)).save(movie);
+        // Assert - коментарът се записва директно, без да се зарежда и презаписва филмът
+        assertEquals(commentText, result.getCommentText());
+        assertEquals(Instant.parse("2025-03-25T00:00:00Z"), result.getCreatedAt());
+        assertEquals(movie, result.getMovie());
+        assertTrue(movie.getMovieComments().isEmpty());
+        verify(movieRatingBucketRepository, times(1)).addVotes(movieUUID, 4, 1);
+        verify(movieRepository, never()).findById(movieUUID);
+        verify(movieRepository, never()).save(any(Movie.class));
+    }
+
+    @Test
+    void testPostComment_MovieNotFound() {
+        String movieId = UUID.randomUUID().toString();
+        when(movieRepository.updateRatingStats(UUID.fromString(movieId), 1, 5)).thenReturn(0);
+
+        assertThrows(RuntimeException.class, () -> movieService.postComment("user", "User", "img", "text", 5,
+                "2025-03-25", UUID.randomUUID().toString(), movieId));
+        verify(movieCommentRepository, never()).save(any(MovieComment.class));
+        verify(movieRatingBucketRepository, never()).addVotes(any(UUID.class), anyInt(), anyLong());
     }
 
     @Test
@@ -85,29 +125,53 @@ class MovieServiceTest {
     }
 
     @Test
-    void testExtractDetailsImages() {
+    void testReadDetailsImages() throws Exception {
         // Arrange
-        JsonArray jsonArray = new JsonArray();
+        StringBuilder json = new StringBuilder("{\"backdrops\":[");
         for (int i = 0; i < 3; i++) {
-            JsonObject jsonObject = new JsonObject();
-            jsonObject.addProperty("file_path", "http://example.com/image" + i + ".jpg");
-            jsonArray.add(jsonObject);
+            if (i > 0) json.append(',');
+            json.append("{\"file_path\":\"http://example.com/image").append(i).append(".jpg\"}");
         }
+        json.append("]}");
 
         int limit = 2;
 
         // Act
-        CompletableFuture<List<MovieImage>> futureResult = movieService.extractDetailsImages(jsonArray, ImageType.BACKDROP, limit);
-        List<MovieImage> result = futureResult.join();
+        List<MovieImage> result;
+        try (JsonParser parser = new ObjectMapper().createParser(json.toString())) {
+            result = MovieService.readDetailsImages(parser, limit, limit);
+        }
 
         // Assert
-        assertNotNull(result);
+        assertEquals(2, result.size());
         assertEquals("http://example.com/image0.jpg", result.get(0).getImageURL());
         assertEquals("http://example.com/image1.jpg", result.get(1).getImageURL());
         assertEquals(ImageType.BACKDROP, result.get(0).getImageType()); // Проверка дали типът на изображението е правилен
         assertEquals(ImageType.BACKDROP, result.get(1).getImageType());
     }
 
+    @Test
+    void testReadDetailsImages_StopsAtLimits() throws Exception {
+        // Arrange
+        String json = "{\"backdrops\":[{\"file_path\":\"/b0.jpg\",\"width\":1920},{\"file_path\":\"/b1.jpg\"},{\"file_path\":\"/b2.jpg\"}]," +
+                "\"id\":27205,\"logos\":[{\"file_path\":\"/logo.png\"}]," +
+                "\"posters\":[{\"file_path\":\"/p0.jpg\"},{\"file_path\":\"/p1.jpg\"}]}";
+
+        // Act
+        List<MovieImage> result;
+        try (JsonParser parser = new ObjectMapper().createParser(json)) {
+            result = MovieService.readDetailsImages(parser, 2, 1);
+        }
+
+        // Assert
+        assertEquals(3, result.size());
+        assertEquals("/b0.jpg", result.get(0).getImageURL());
+        assertEquals("/b1.jpg", result.get(1).getImageURL());
+        assertEquals(ImageType.BACKDROP, result.get(1).getImageType());
+        assertEquals("/p0.jpg", result.get(2).getImageURL());
+        assertEquals(ImageType.POSTER, result.get(2).getImageType());
+    }
+
     @Test
     void testGetNext10Comments() {
         // Arrange
@@ -117,8 +181,10 @@ class MovieServiceTest {
 
         // Създаваме mock лист с Object[], където всеки Object[] представя MovieComment
         List<Object[]> mockComments = List.of(
-                new Object[]{UUID.randomUUID(), "Great movie!", "user123", "John Doe", "img_url", UUID.randomUUID(), 4.5, "2024-03-29 12:00:00"},
-                new Object[]{UUID.randomUUID(), "Not bad!", "user456", "Jane Doe", "img_url2", UUID.randomUUID(), 3.8, "2024-03-28 14:30:00"}
+                new Object[]{UUID.randomUUID(), "Great movie!", "user123", "John Doe", "img_url", UUID.randomUUID(), 4.5,
+                        Timestamp.from(Instant.parse("2024-03-29T12:00:00Z"))},
+                new Object[]{UUID.randomUUID(), "Not bad!", "user456", "Jane Doe", "img_url2", UUID.randomUUID(), 3.8,
+                        Timestamp.from(Instant.parse("2024-03-28T14:30:00Z"))}
         );
 
         when(movieRepository.getNext10Comments(offset, movieId)).thenReturn(mockComments);
@@ -130,6 +196,7 @@ class MovieServiceTest {
         assertEquals(mockComments.size(), result.size());
         assertEquals("Great movie!", result.get(0).getCommentText());
         assertEquals("Not bad!", result.get(1).getCommentText());
+        assertEquals(Instant.parse("2024-03-29T12:00:00Z"), result.get(0).getCreatedAt());
 
         verify(movieRepository, times(1)).getNext10Comments(offset, movieId);
     }
@@ -140,20 +207,29 @@ class MovieServiceTest {
         // Arrange
         UUID movieId = UUID.randomUUID();
         UUID commentId = UUID.randomUUID();
-        Movie movie = new Movie();
-        MovieComment comment = new MovieComment();
-        comment.setId(commentId);
-        movie.setMovieComments(new ArrayList<>(List.of(comment)));
 
-        when(movieRepository.findById(movieId)).thenReturn(Optional.of(movie));
+        when(movieCommentRepository.deleteReturningRating(commentId, movieId)).thenReturn(Optional.of(7.5));
 
         // Act
         movieService.deleteMovieComment(commentId.toString(), movieId.toString());
 
         // Assert
-        assertTrue(movie.getMovieComments().isEmpty());
-        verify(movieCommentRepository, times(1)).delete(comment);
-        verify(movieRepository, times(1)).save(movie);
+        verify(movieCommentRepository, times(1)).deleteReturningRating(commentId, movieId);
+        verify(movieRepository, times(1)).updateRatingStats(movieId, -1, -7.5);
+        verify(movieRatingBucketRepository, times(1)).addVotes(movieId, 7, -1);
+        verify(movieRepository, never()).findById(movieId);
+        verify(movieRepository, never()).save(any(Movie.class));
+    }
+
+    @Test
+    void testDeleteMovieComment_NotFound() {
+        UUID movieId = UUID.randomUUID();
+        UUID commentId = UUID.randomUUID();
+
+        when(movieCommentRepository.deleteReturningRating(commentId, movieId)).thenReturn(Optional.empty());
+
+        assertThrows(RuntimeException.class, () -> movieService.deleteMovieComment(commentId.toString(), movieId.toString()));
+        verify(movieRepository, never()).updateRatingStats(any(UUID.class), anyLong(), anyDouble());
     }
 
     @Test
@@ -165,7 +241,7 @@ class MovieServiceTest {
         String posterUrl = "http://example.com/madmax.jpg";
         String releaseDate = "2015-05-15";
         List<Object[]> mockRawData = new ArrayList<>();
-        mockRawData.add(new Object[]{movieId, title, posterUrl, releaseDate});
+        mockRawData.add(new Object[]{movieId, title, posterUrl, releaseDate, 2L, 15.0});
 
         Pageable pageable = PageRequest.of(0, 20);
         when(movieRepository.findByGenreNextTwentyMovies(genre, 20, 0)).thenReturn(mockRawData);
@@ -200,15 +276,68 @@ class MovieServiceTest {
     void testGetMoviesByTitle() {
         // Arrange
         String title = "Inception";
-        List<Movie> mockMovies = List.of(new Movie(), new Movie());
-        when(movieRepository.findByTitleOrSearchTagContainingIgnoreCase(title)).thenReturn(mockMovies);
+        Movie firstMovie = new Movie().setId(UUID.randomUUID());
+        Movie secondMovie = new Movie().setId(UUID.randomUUID());
+        List<Object[]> rankedIds = List.of(
+                new Object[]{secondMovie.getId(), 2L},
+                new Object[]{firstMovie.getId(), 2L}
+        );
+
+        when(movieRepository.searchRankedMovieIds(eq(title), anyInt(), eq(0))).thenReturn(rankedIds);
+        when(movieRepository.findAllById(List.of(secondMovie.getId(), firstMovie.getId())))
+                .thenReturn(List.of(firstMovie, secondMovie));
+
+        // Act
+        MovieSearchResponse result = movieService.getMoviesByTitle(title);
+
+        // Assert - редът по релевантност се запазва
+        assertEquals(2, result.getTotalCount());
+        assertEquals(2, result.getMovies().size());
+        assertEquals(secondMovie, result.getMovies().get(0));
+        assertEquals(firstMovie, result.getMovies().get(1));
+    }
+
+    @Test
+    void testGetMoviePreviewsByTitle_PagePastTheEndKeepsTotalCount() {
+        // Arrange - страница 5 е след края, COUNT(*) OVER() няма ред, на който да дойде
+        String title = "Inception";
+        when(movieRepository.searchRankedMoviesRawData(title, 20, 100)).thenReturn(List.of());
+        when(movieRepository.findMoviesCountByTitleOrSearchTagContainingIgnoreCase(title)).thenReturn(42L);
+
+        // Act
+        CinemaRecordSearchResponse result = movieService.getMoviePreviewsByTitle(title, PageRequest.of(5, 20));
+
+        // Assert
+        assertEquals(42L, result.getTotalCount());
+        assertTrue(result.getResults().isEmpty());
+    }
+
+    @Test
+    void testGetMoviePreviewsByTitle_EmptyFirstPageSkipsCountQuery() {
+        // Arrange
+        String title = "Inception";
+        when(movieRepository.searchRankedMoviesRawData(title, 20, 0)).thenReturn(List.of());
 
         // Act
-        List<Movie> result = movieService.getMoviesByTitle(title);
+        CinemaRecordSearchResponse result = movieService.getMoviePreviewsByTitle(title, PageRequest.of(0, 20));
 
         // Assert
-        assertEquals(mockMovies.size(), result.size());
-        verify(movieRepository, times(1)).findByTitleOrSearchTagContainingIgnoreCase(title);
+        assertEquals(0L, result.getTotalCount());
+        verify(movieRepository, never()).findMoviesCountByTitleOrSearchTagContainingIgnoreCase(title);
+    }
+
+    @Test
+    void testGetMoviePreviewsByTitle_ClampsPageSize() {
+        // Arrange
+        String title = "Inception";
+        when(movieRepository.searchRankedMoviesRawData(title, 100, 100)).thenReturn(List.of());
+        when(movieRepository.findMoviesCountByTitleOrSearchTagContainingIgnoreCase(title)).thenReturn(0L);
+
+        // Act
+        movieService.getMoviePreviewsByTitle(title, PageRequest.of(1, 100_000));
+
+        // Assert - и OFFSET се смята от ограничения размер
+        verify(movieRepository).searchRankedMoviesRawData(title, 100, 100);
     }
 
     @Test
@@ -216,28 +345,27 @@ class MovieServiceTest {
         // Arrange
         String genre = "Action";
         long expectedCount = 50L;
-        when(movieRepository.findMoviesCountByGenre(genre)).thenReturn(expectedCount);
+        when(catalogCounterRepository.findValueByKey("genre:action")).thenReturn(Optional.of(expectedCount));
 
         // Act
         long result = movieService.findMoviesCountByGenre(genre);
 
         // Assert
         assertEquals(expectedCount, result);
-        verify(movieRepository, times(1)).findMoviesCountByGenre(genre);
     }
 
     @Test
     void testGetAllMoviesCount() {
         // Arrange
         long expectedCount = 100L;
-        when(movieRepository.count()).thenReturn(expectedCount);
+        when(catalogCounterRepository.findValueByKey(CatalogCounter.TOTAL_MOVIES_KEY)).thenReturn(Optional.of(expectedCount));
 
         // Act
         long result = movieService.getAllMoviesCount();
 
         // Assert
         assertEquals(expectedCount, result);
-        verify(movieRepository, times(1)).count();
+        verify(movieRepository, never()).count();
     }
 
     @Test
@@ -245,25 +373,25 @@ class MovieServiceTest {
         // Arrange
         UUID movieId = UUID.randomUUID();
         Movie mockMovie = new Movie();
-        when(movieRepository.findById(movieId)).thenReturn(Optional.of(mockMovie));
+        when(movieRepository.findWithCastById(movieId)).thenReturn(Optional.of(mockMovie));
 
         // Act
-        Movie result = movieService.getConcreteMovieDetails(movieId);
+        Movie result = movieService.getConcreteMovieDetails(movieId, 0);
 
         // Assert
         assertEquals(mockMovie, result);
-        verify(movieRepository, times(1)).findById(movieId);
+        verify(movieRepository, times(1)).findWithCastById(movieId);
     }
 
     @Test
     void testGetConcreteMovieDetails_NotFound() {
         // Arrange
         UUID movieId = UUID.randomUUID();
-        when(movieRepository.findById(movieId)).thenReturn(Optional.empty());
+        when(movieRepository.findWithCastById(movieId)).thenReturn(Optional.empty());
 
         // Act & Assert
-        assertThrows(NoSuchElementException.class, () -> movieService.getConcreteMovieDetails(movieId));
-        verify(movieRepository, times(1)).findById(movieId);
+        assertThrows(NoSuchElementException.class, () -> movieService.getConcreteMovieDetails(movieId, 0));
+        verify(movieRepository, times(1)).findWithCastById(movieId);
     }
 
     @Test
@@ -275,7 +403,7 @@ class MovieServiceTest {
         String releaseDate = "2010-07-16";
 
         List<Object[]> mockRawData = new ArrayList<>();
-        mockRawData.add(new Object[]{movieId, title, posterUrl, releaseDate});
+        mockRawData.add(new Object[]{movieId, title, posterUrl, releaseDate, 2L, 15.0});
 
         Pageable pageable = PageRequest.of(0, 30);
 
@@ -289,17 +417,50 @@ class MovieServiceTest {
         assertEquals(title, result.getContent().get(0).getTitle());
         assertEquals(posterUrl, result.getContent().get(0).getPosterImgURL());
         assertEquals(releaseDate, result.getContent().get(0).getReleaseDate());
+        assertEquals(7.5, result.getContent().get(0).getAverageRating());
+        assertEquals(2L, result.getContent().get(0).getRatingsCount());
 
         verify(movieRepository, times(1)).getThirthyMoviesRawData(30, 0);
     }
 
     @Test
-    public void testExtractDetailsImagesWithNullParams() {
-        // Когато входните параметри са null, очакваме да се върне празен списък
-        List<MovieImage> images = movieService.extractDetailsImages(null, ImageType.BACKDROP, 1).join();
-        assertTrue(images.isEmpty());
+    void testGetMoviesByCursor() {
+        // Arrange
+        Instant newest = Instant.parse("2025-03-02T10:00:00Z");
+        Instant older = Instant.parse("2025-03-01T10:00:00Z");
+        UUID firstId = UUID.randomUUID();
+        UUID secondId = UUID.randomUUID();
+
+        List<Object[]> firstPage = new ArrayList<>();
+        firstPage.add(new Object[]{firstId, "Inception", "poster1.jpg", "2010-07-16", 0L, 0.0, Timestamp.from(newest)});
+        firstPage.add(new Object[]{secondId, "Interstellar", "poster2.jpg", "2014-11-07", 0L, 0.0, Timestamp.from(older)});
+
+        when(movieRepository.getFirstMoviesRawData(2)).thenReturn(firstPage);
+        when(movieRepository.getMoviesRawDataAfterCursor(newest, firstId, 2)).thenReturn(List.<Object[]>of(firstPage.get(1)));
+
+        // Act
+        CursorPageResponse<CinemaRecordResponse> result = movieService.getMoviesByCursor(null, 1);
+        CursorPageResponse<CinemaRecordResponse> nextResult = movieService.getMoviesByCursor(result.getNextCursor(), 1);
+
+        // Assert
+        assertEquals(1, result.getItems().size());
+        assertEquals("Inception", result.getItems().get(0).getTitle());
+        assertNotNull(result.getNextCursor());
+
+        assertEquals(1, nextResult.getItems().size());
+        assertEquals("Interstellar", nextResult.getItems().get(0).getTitle());
+        assertNull(nextResult.getNextCursor());
+    }
+
+    @Test
+    public void testReadDetailsImagesWithoutImageArrays() throws Exception {
+        // Когато отговорът не е обект или няма backdrops/posters, очакваме да се върне празен списък
+        try (JsonParser parser = new ObjectMapper().createParser("[]")) {
+            assertTrue(MovieService.readDetailsImages(parser, 1, 1).isEmpty());
+        }
 
-        images = movieService.extractDetailsImages(new JsonArray(), null, 1).join();
-        assertTrue(images.isEmpty());
+        try (JsonParser parser = new ObjectMapper().createParser("{\"id\":27205,\"logos\":[{\"file_path\":\"/logo.png\"}]}")) {
+            assertTrue(MovieService.readDetailsImages(parser, 1, 1).isEmpty());
+        }
     }
 }
\ No newline at end of file
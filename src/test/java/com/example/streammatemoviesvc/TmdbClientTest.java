@@ -0,0 +1,75 @@
+package com.example.streammatemoviesvc;
+
+import com.example.streammatemoviesvc.app.commonData.clients.TmdbClient;
+import com.example.streammatemoviesvc.app.commonData.clients.TmdbRequestGovernor;
+import com.example.streammatemoviesvc.app.commonData.clients.TmdbResponseCache;
+import com.example.streammatemoviesvc.app.commonData.services.IngestionMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+class TmdbClientTest {
+
+    @Mock
+    private HttpClient httpClient;
+
+    @Mock
+    private TmdbResponseCache responseCache;
+
+    @Mock
+    private IngestionMetrics ingestionMetrics;
+
+    @Test
+    void testGet_InterruptedRequestReleasesGovernorSlot() throws Exception {
+        // Arrange
+        TmdbRequestGovernor governor = new TmdbRequestGovernor(100, 100, 1, 1, 0,
+                Duration.ofMillis(10), Duration.ofMillis(10), new SimpleMeterRegistry());
+        TmdbClient tmdbClient = new TmdbClient(httpClient, responseCache, governor, new ObjectMapper(), ingestionMetrics);
+
+        // send() блокира, докато нишката не бъде прекъсната – както при shutdownNow() на scope-а
+        CountDownLatch requestStarted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            requestStarted.countDown();
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            return null;
+        }).when(httpClient).send(any(), any());
+
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            try {
+                tmdbClient.get("http://tmdb.test/3/movie/1", String.class);
+            } catch (Throwable throwable) {
+                thrown.set(throwable);
+            }
+        });
+
+        // Act
+        caller.start();
+        assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, governor.getInFlight());
+        caller.interrupt();
+        caller.join(TimeUnit.SECONDS.toMillis(5));
+
+        // Assert
+        assertInstanceOf(InterruptedException.class, thrown.get());
+        assertEquals(0, governor.getInFlight());
+
+        // С лимит 1 следващото acquire() би блокирало завинаги, ако мястото не беше освободено
+        governor.acquire();
+        governor.onSuccess();
+    }
+}
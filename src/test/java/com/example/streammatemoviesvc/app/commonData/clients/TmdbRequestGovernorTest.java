@@ -0,0 +1,177 @@
+package com.example.streammatemoviesvc.app.commonData.clients;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Часовникът е ръчен, а tryAcquire() не блокира – нищо в тези тестове не чака реално време
+class TmdbRequestGovernorTest {
+
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @Test
+    void testTryAcquire_TokenBucketRefillsAtConfiguredRate() {
+        // Arrange - 10 заявки в секунда, burst 2
+        TmdbRequestGovernor governor = newGovernor(10, 2, 1, 100);
+
+        // Act & Assert - burst-ът се харчи веднага, после чакаме по 100ms на токен
+        assertEquals(0, governor.tryAcquire());
+        assertEquals(0, governor.tryAcquire());
+        assertWaitNanos(TimeUnit.MILLISECONDS.toNanos(100), governor.tryAcquire());
+
+        advance(Duration.ofMillis(40));
+        assertWaitNanos(TimeUnit.MILLISECONDS.toNanos(60), governor.tryAcquire());
+
+        advance(Duration.ofMillis(60));
+        assertEquals(0, governor.tryAcquire());
+        assertEquals(3, governor.getInFlight());
+    }
+
+    @Test
+    void testTryAcquire_IdleTimeDoesNotExceedBurst() {
+        // Arrange
+        TmdbRequestGovernor governor = newGovernor(10, 2, 1, 100);
+
+        // Act - минута без заявки би дала 600 токена без горна граница
+        advance(Duration.ofMinutes(1));
+
+        // Assert
+        assertEquals(0, governor.tryAcquire());
+        assertEquals(0, governor.tryAcquire());
+        assertTrue(governor.tryAcquire() > 0);
+    }
+
+    @Test
+    void testOnThrottled_HalvesLimitOncePerCooldownDownToMinimum() {
+        // Arrange
+        TmdbRequestGovernor governor = newGovernor(1000, 1000, 2, 8);
+
+        // Act & Assert - поредица от 429 в рамките на секунда е един сигнал
+        throttle(governor, null);
+        assertEquals(4, governor.getConcurrencyLimit());
+        throttle(governor, null);
+        assertEquals(4, governor.getConcurrencyLimit());
+
+        advance(Duration.ofSeconds(1));
+        throttle(governor, null);
+        assertEquals(2, governor.getConcurrencyLimit());
+
+        advance(Duration.ofSeconds(1));
+        throttle(governor, null);
+        assertEquals(2, governor.getConcurrencyLimit());
+    }
+
+    @Test
+    void testTryAcquire_WaitsForFreeSlotUnderConcurrencyLimit() {
+        // Arrange
+        TmdbRequestGovernor governor = newGovernor(1000, 1000, 2, 2);
+
+        // Act & Assert - -1 значи "до освобождаване на място", не до определено време
+        assertEquals(0, governor.tryAcquire());
+        assertEquals(0, governor.tryAcquire());
+        assertEquals(-1, governor.tryAcquire());
+
+        governor.onSuccess();
+        assertEquals(0, governor.tryAcquire());
+    }
+
+    @Test
+    void testOnSuccess_RecoversLimitAdditivelyUpToMaximum() {
+        // Arrange - лимитът е свален до минимума
+        TmdbRequestGovernor governor = newGovernor(1000, 1000, 2, 8);
+        throttle(governor, null);
+        advance(Duration.ofSeconds(1));
+        throttle(governor, null);
+        assertEquals(2, governor.getConcurrencyLimit());
+
+        // Act & Assert - +1/limit на успех, т.е. около +1 за пълен прозорец
+        succeed(governor);
+        assertEquals(2.5, governor.getConcurrencyLimit(), 1e-9);
+        succeed(governor);
+        assertEquals(2.9, governor.getConcurrencyLimit(), 1e-9);
+
+        for (int i = 0; i < 100; i++) succeed(governor);
+        assertEquals(8, governor.getConcurrencyLimit());
+    }
+
+    @Test
+    void testOnThrottled_RetryAfterPausesEveryCaller() {
+        // Arrange - две заявки в движение
+        TmdbRequestGovernor governor = newGovernor(1000, 1000, 2, 8);
+        assertEquals(0, governor.tryAcquire());
+        assertEquals(0, governor.tryAcquire());
+
+        // Act
+        governor.onThrottled(Duration.ofSeconds(5));
+
+        // Assert - паузата важи за всички, а по-кратък Retry-After не я съкращава
+        assertEquals(TimeUnit.SECONDS.toNanos(5), governor.tryAcquire());
+        governor.onThrottled(Duration.ofSeconds(1));
+        assertEquals(TimeUnit.SECONDS.toNanos(5), governor.tryAcquire());
+
+        advance(Duration.ofSeconds(2));
+        assertEquals(TimeUnit.SECONDS.toNanos(3), governor.tryAcquire());
+
+        advance(Duration.ofSeconds(3));
+        assertEquals(0, governor.tryAcquire());
+    }
+
+    @Test
+    void testParseRetryAfter_HttpDatePausesUntilThatDate() {
+        // Arrange
+        Clock clock = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+        TmdbRequestGovernor governor = newGovernor(1000, 1000, 2, 8);
+
+        // Act
+        Duration retryAfter = TmdbClient.parseRetryAfter("Thu, 01 Jan 2026 00:00:30 GMT", clock);
+        throttle(governor, retryAfter);
+
+        // Assert
+        assertEquals(Duration.ofSeconds(30), retryAfter);
+        assertEquals(TimeUnit.SECONDS.toNanos(30), governor.tryAcquire());
+    }
+
+    @Test
+    void testParseRetryAfter_SecondsAndInvalidValues() {
+        Clock clock = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+        assertEquals(Duration.ofSeconds(120), TmdbClient.parseRetryAfter(" 120 ", clock));
+        assertEquals(Duration.ZERO, TmdbClient.parseRetryAfter("-5", clock));
+        assertEquals(Duration.ZERO, TmdbClient.parseRetryAfter("Wed, 31 Dec 2025 23:59:00 GMT", clock));
+        assertNull(TmdbClient.parseRetryAfter("soon", clock));
+        assertNull(TmdbClient.parseRetryAfter(" ", clock));
+        assertNull(TmdbClient.parseRetryAfter(null, clock));
+    }
+
+    private TmdbRequestGovernor newGovernor(double ratePerSecond, double burst, int minConcurrency, int maxConcurrency) {
+        return new TmdbRequestGovernor(ratePerSecond, burst, minConcurrency, maxConcurrency, 0,
+                Duration.ofMillis(10), Duration.ofMillis(10), new SimpleMeterRegistry(), this.nanoTime::get);
+    }
+
+    private void advance(Duration duration) {
+        this.nanoTime.addAndGet(duration.toNanos());
+    }
+
+    private static void throttle(TmdbRequestGovernor governor, Duration retryAfter) {
+        assertEquals(0, governor.tryAcquire());
+        governor.onThrottled(retryAfter);
+    }
+
+    // Токените са double – допускаме закръгляне до микросекунда
+    private static void assertWaitNanos(long expectedNanos, long actualNanos) {
+        assertEquals(expectedNanos, actualNanos, TimeUnit.MICROSECONDS.toNanos(1));
+    }
+
+    private static void succeed(TmdbRequestGovernor governor) {
+        assertEquals(0, governor.tryAcquire());
+        governor.onSuccess();
+    }
+}
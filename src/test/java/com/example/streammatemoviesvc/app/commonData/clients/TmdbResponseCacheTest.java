@@ -0,0 +1,229 @@
+package com.example.streammatemoviesvc.app.commonData.clients;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// В същия пакет като кеша – часовникът и loadIndex() не са част от публичния API
+class TmdbResponseCacheTest {
+
+    private static final String SEARCH_URL = "https://api.themoviedb.org/3/search/movie?api_key=first&query=inception";
+    private static final String MOVIE_URL = "https://api.themoviedb.org/3/movie/27205?api_key=first";
+    private static final String LISTING_URL = "https://api.themoviedb.org/3/movie/popular?api_key=first&page=";
+
+    @TempDir
+    Path cacheDir;
+
+    private MutableClock clock;
+
+    @BeforeEach
+    void setUp() {
+        // loadIndex() чете времето на запис от файловете, затова часовникът тръгва от реалното време
+        this.clock = new MutableClock(Instant.now());
+    }
+
+    @Test
+    void testCacheKey_StripsApiKey() {
+        assertEquals("https://api.themoviedb.org/3/search/movie?query=inception", TmdbResponseCache.cacheKey(SEARCH_URL));
+        assertEquals("https://api.themoviedb.org/3/movie/27205", TmdbResponseCache.cacheKey(MOVIE_URL));
+        assertEquals("https://api.themoviedb.org/3/search/movie?query=inception",
+                TmdbResponseCache.cacheKey("https://api.themoviedb.org/3/search/movie?query=inception&api_key=second"));
+    }
+
+    @Test
+    void testOpen_HitsTheSameEntryWithAnotherApiKey() throws IOException {
+        // Arrange
+        TmdbResponseCache cache = newCache(512);
+        write(cache, SEARCH_URL, "{\"results\":[]}");
+
+        // Act
+        Optional<InputStream> cached = cache.open(SEARCH_URL.replace("api_key=first", "api_key=second"));
+
+        // Assert
+        assertTrue(cached.isPresent());
+        assertEquals("{\"results\":[]}", read(cached.get()));
+    }
+
+    @Test
+    void testOpen_ExpiresEntriesByEndpointTtl() throws IOException {
+        // Arrange - search живее 1h, movie – 1d
+        TmdbResponseCache cache = newCache(512);
+        write(cache, SEARCH_URL, "{\"results\":[]}");
+        write(cache, MOVIE_URL, "{\"id\":27205}");
+
+        // Act
+        this.clock.advance(Duration.ofHours(2));
+
+        // Assert - изтеклият запис изчезва и от диска
+        assertFalse(isCached(cache, SEARCH_URL));
+        assertEquals(1, cachedFiles().size());
+        assertTrue(isCached(cache, MOVIE_URL));
+
+        this.clock.advance(Duration.ofDays(1));
+        assertFalse(isCached(cache, MOVIE_URL));
+        assertTrue(cachedFiles().isEmpty());
+    }
+
+    @Test
+    void testWriteThrough_TrimsLeastRecentlyUsedEntriesToSizeBudget() throws IOException {
+        // Arrange - лимит 1 MB, три записа по 400 KB; при надвишаване се реже до 90% от лимита
+        TmdbResponseCache cache = newCache(1);
+        String body = "x".repeat(400 * 1024);
+
+        write(cache, LISTING_URL + 1, body);
+        this.clock.advance(Duration.ofSeconds(1));
+        write(cache, LISTING_URL + 2, body);
+        this.clock.advance(Duration.ofSeconds(1));
+
+        // Първата страница е четена последно, затова се пази вместо втората
+        read(cache.open(LISTING_URL + 1).orElseThrow());
+        this.clock.advance(Duration.ofSeconds(1));
+
+        // Act
+        write(cache, LISTING_URL + 3, body);
+
+        // Assert
+        assertTrue(isCached(cache, LISTING_URL + 1));
+        assertFalse(isCached(cache, LISTING_URL + 2));
+        assertTrue(isCached(cache, LISTING_URL + 3));
+        assertEquals(2, cachedFiles().size());
+    }
+
+    @Test
+    void testWriteThrough_AbortedReadLeavesNoFile() throws IOException {
+        // Arrange
+        TmdbResponseCache cache = newCache(512);
+        TmdbResponseCache.WriteThroughStream body = cache.writeThrough(MOVIE_URL,
+                new ByteArrayInputStream("{\"id\":27205}".getBytes(StandardCharsets.UTF_8)));
+
+        // Act - парсерът спира по средата, без markComplete()
+        body.read(new byte[4]);
+        body.close();
+
+        // Assert
+        assertFalse(isCached(cache, MOVIE_URL));
+        assertEquals(List.of(), directoryListing());
+    }
+
+    @Test
+    void testWriteThrough_FailedReadLeavesNoFile() throws IOException {
+        // Arrange - връзката се къса след първите байтове
+        TmdbResponseCache cache = newCache(512);
+        InputStream brokenSource = new InputStream() {
+            private int served;
+
+            @Override
+            public int read() throws IOException {
+                if (served++ < 4) return '{';
+                throw new IOException("Connection reset");
+            }
+        };
+        TmdbResponseCache.WriteThroughStream body = cache.writeThrough(MOVIE_URL, brokenSource);
+
+        // Act
+        assertThrows(IOException.class, () -> body.readAllBytes());
+        body.close();
+
+        // Assert
+        assertFalse(isCached(cache, MOVIE_URL));
+        assertEquals(List.of(), directoryListing());
+    }
+
+    @Test
+    void testLoadIndex_DeletesTempFilesAndKeepsEntries() throws IOException {
+        // Arrange - запис от предишно стартиране и временен файл от прекъснат запис
+        write(newCache(512), MOVIE_URL, "{\"id\":27205}");
+        Path orphan = Files.createTempFile(this.cacheDir, "tmdb-", ".tmp");
+
+        // Act
+        TmdbResponseCache restarted = newCache(512);
+
+        // Assert
+        assertFalse(Files.exists(orphan));
+        assertEquals("{\"id\":27205}", read(restarted.open(MOVIE_URL).orElseThrow()));
+    }
+
+    private TmdbResponseCache newCache(long maxSizeMb) throws IOException {
+        TmdbResponseCache cache = new TmdbResponseCache(true, this.cacheDir.toString(), maxSizeMb,
+                Duration.ofHours(1), Duration.ofHours(6), Duration.ofDays(1),
+                Duration.ofDays(1), Duration.ofDays(7), Duration.ofDays(7), this.clock);
+        cache.loadIndex();
+        return cache;
+    }
+
+    private static void write(TmdbResponseCache cache, String url, String body) throws IOException {
+        try (TmdbResponseCache.WriteThroughStream stream = cache.writeThrough(url,
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)))) {
+            stream.readAllBytes();
+            stream.markComplete();
+        }
+    }
+
+    private static boolean isCached(TmdbResponseCache cache, String url) throws IOException {
+        Optional<InputStream> cached = cache.open(url);
+        if (cached.isEmpty()) return false;
+
+        cached.get().close();
+        return true;
+    }
+
+    private static String read(InputStream body) throws IOException {
+        try (body) {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private List<Path> cachedFiles() throws IOException {
+        return directoryListing().stream().filter(file -> file.toString().endsWith(".json")).toList();
+    }
+
+    private List<Path> directoryListing() throws IOException {
+        try (Stream<Path> files = Files.list(this.cacheDir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            this.now = this.now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return this.now;
+        }
+    }
+}